@@ -1,5 +1,18 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import com.jsp.lms.controller.Controller;
+import com.jsp.lms.io.CatalogJournal;
 import com.jsp.lms.model.Book;
+import com.jsp.lms.model.CompactLibrary;
 import com.jsp.lms.model.Library;
 
 /**
@@ -101,7 +114,182 @@ public class TestOptimizedLMS {
             System.out.println("✓ Validation working: " + e.getMessage());
         }
         
+        // Test titles shared by several books
+        System.out.println("\n12. Testing Books Sharing a Title:");
+        Library shared = new Library();
+        shared.setBooks(java.util.Arrays.asList(
+            new Book("Dracula", "Bram Stoker", 9.99), new Book("DRACULA", "Bram Stoker", 4.99)));
+        shared.removeBook("Dracula");
+        check(shared.findBookByName("dracula") != null, "the remaining book is found by title");
+        check(shared.removeBook("dracula") && shared.getTotalBooks() == 0, "and can be removed by title");
+        for (Library editions : new Library[] {new Library(), new CompactLibrary()}) {
+            String engine = editions.getClass().getSimpleName();
+            editions.addBook(new Book("Dune", "Frank Herbert", 9.99, "978-0441172719", 1));
+            editions.addBook(new Book("Dune", "Frank Herbert", 12.99, "978-0340960196", 1));
+            long first = editions.findByIsbn("978-0441172719").getId();
+            long second = editions.findByIsbn("978-0340960196").getId();
+            check(editions.getTotalBooks() == 2, engine + " keeps two editions of one title");
+            check(editions.updateBook(second, new Book("Dune", "Frank Herbert", 14.99, "978-0340960196", 2)),
+                    engine + " updates the second edition under the shared title");
+            editions.removeBook(first);
+            Book remaining = editions.findBookByName("dune");
+            check(remaining != null && remaining.getId() == second && remaining.getQuantity() == 2,
+                    engine + " finds the second edition by title once the first is removed");
+            check(editions.removeBook("Dune") && editions.getTotalBooks() == 0, engine + " removes it by title");
+        }
+        
+        // Test renaming a book the library holds
+        System.out.println("\n13. Testing Renames of Tracked Books:");
+        Book tracked = controller.getBook("1984");
+        tracked.setBookName("Nineteen Eighty-Four");
+        check(controller.getBook("Nineteen Eighty-Four") == tracked, "found under its new title");
+        check(controller.getBook("1984") == null, "gone from its old title");
+        tracked.setBookAuthor("Eric Blair");
+        check(library.findBooksByAuthor("Eric Blair").contains(tracked), "listed under its new author");
+        check(library.findBooksByAuthor("George Orwell").isEmpty(), "gone from its old author");
+        tracked.setIsbn("978-0441172719");
+        check(library.findByIsbn("978-0441172719") == tracked, "found under its new ISBN");
+        check(library.findByIsbn("978-0451524935") == null, "gone from its old ISBN");
+        
+        // Test the running totals under concurrent price and quantity changes
+        System.out.println("\n14. Testing Running Totals Under Concurrent Changes:");
+        Library busy = new Library(true);
+        for (int i = 0; i < 20; i++) {
+            busy.addBook(new Book("Title " + i, "Author", 10, null, 50));
+        }
+        Thread[] workers = new Thread[8];
+        for (int t = 0; t < workers.length; t++) {
+            Random random = new Random(t);
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 50000; i++) {
+                    Book book = busy.findBookById(1 + random.nextInt(20));
+                    int op = random.nextInt(10);
+                    if (op == 0) {
+                        book.setBookPrice(random.nextInt(100));
+                    } else if (op < 5) {
+                        book.decrementQuantity();
+                    } else {
+                        book.incrementQuantity();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        joinAll(workers);
+        long valueCents = 0;
+        int copies = 0;
+        for (Book book : busy.getBooks()) {
+            valueCents += Math.round(book.getBookPrice() * 100) * book.getQuantity();
+            copies += book.getQuantity();
+        }
+        check(busy.getTotalBookCopies() == copies, "total copies match the books");
+        check(Math.round(busy.getTotalInventoryValue() * 100) == valueCents, "inventory value matches the books");
+        
+        // Test journal recovery after concurrent borrowing and returning
+        System.out.println("\n15. Testing Journal Recovery After Concurrent Borrowing:");
+        try {
+            check(recoversExactly(() -> new Library(true)), "default engine recovers every quantity");
+            check(recoversExactly(() -> new CompactLibrary(true)), "compact engine recovers every quantity");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
         System.out.println("\n=== Test Completed Successfully! ===");
         System.out.println("All optimizations and new features are working correctly.");
     }
+    
+    // Journals a library through concurrent borrows, returns and renames, then recovers
+    // a copy of the journal directory taken while it is still open, as a crash
+    // would leave it. The writer drains its queue in the background, so the
+    // copy is retried for a few seconds until every record has reached it, or
+    // until the journal reports that its writer failed.
+    private static boolean recoversExactly(Supplier<Library> engine) throws IOException {
+        Path directory = Files.createTempDirectory("lms-journal");
+        Library library = engine.get();
+        try (CatalogJournal journal = CatalogJournal.open(directory, library, CatalogJournal.SyncPolicy.INTERVAL)) {
+            for (int i = 0; i < 20; i++) {
+                library.addBook(new Book("Title " + i, "Author", 10, null, 2));
+            }
+            Thread[] workers = new Thread[8];
+            for (int t = 0; t < workers.length; t++) {
+                Random random = new Random(t);
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        long bookId = 1 + random.nextInt(20);
+                        if (random.nextInt(100) == 0) {
+                            library.findBookById(bookId).setBookName("Title " + bookId + " #" + i);
+                        } else if (random.nextBoolean()) {
+                            library.borrowBook(bookId);
+                        } else {
+                            library.returnBook(bookId);
+                        }
+                    }
+                });
+                workers[t].start();
+            }
+            joinAll(workers);
+            
+            long deadline = System.currentTimeMillis() + 5000;
+            do {
+                Path crashImage = Files.createTempDirectory("lms-crash");
+                try {
+                    for (Path file : list(directory)) {
+                        Files.copy(file, crashImage.resolve(file.getFileName()));
+                    }
+                    Library recovered = engine.get();
+                    CatalogJournal.open(crashImage, recovered, CatalogJournal.SyncPolicy.NEVER).close();
+                    if (sameQuantities(library, recovered)) {
+                        return true;
+                    }
+                } finally {
+                    deleteAll(crashImage);
+                }
+            } while (journal.isHealthy() && System.currentTimeMillis() < deadline);
+            return false;
+        } finally {
+            deleteAll(directory);
+        }
+    }
+    
+    private static boolean sameQuantities(Library expected, Library actual) {
+        for (Book book : expected.getBooks()) {
+            Book recovered = actual.findBookById(book.getId());
+            if (recovered == null || recovered.getQuantity() != book.getQuantity()) {
+                return false;
+            }
+        }
+        return actual.getTotalBooks() == expected.getTotalBooks();
+    }
+    
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+    
+    private static void deleteAll(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+    
+    private static void joinAll(Thread[] threads) {
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + thread.getName());
+            }
+        }
+    }
+    
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            throw new IllegalStateException("Check failed: " + description);
+        }
+        System.out.println("✓ " + description);
+    }
 }
@@ -0,0 +1,62 @@
+package com.jsp.lms.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jsp.lms.io.CatalogLoader;
+import com.jsp.lms.io.ImportResult;
+
+// Whole CSV imports into an empty library, one per invocation, with a valid
+// ISBN on every row. The target is 1M rows/s, which is not met yet: on one
+// core a 2M row load on the default engine takes 2.3-5.6 s (0.36-0.86M
+// rows/s), the faster once the JIT has settled, and about 0.3M rows/s without
+// the young generation sized below. See CatalogLoader for where the time goes.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g", "-Xmn2g"})
+@State(Scope.Benchmark)
+public class CatalogLoadBenchmark {
+    @Param({"2000000"})
+    int rows;
+    
+    @Param({"default", "compact"})
+    String engine;
+    
+    @Param({"1"})
+    int parallelism;
+    
+    String csv;
+    
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder(rows * 64);
+        text.append("name,author,price,isbn,quantity\n");
+        for (int i = 0; i < rows; i++) {
+            text.append(Catalogs.title(i)).append(',').append(Catalogs.author(i, rows)).append(',')
+                    .append(5 + i % 95).append(".99,").append(Catalogs.isbn(i)).append(",2\n");
+        }
+        csv = text.toString();
+    }
+    
+    @Benchmark
+    public ImportResult load() throws IOException {
+        CatalogLoader loader = new CatalogLoader(Catalogs.newLibrary(engine, false));
+        loader.setParallelism(parallelism);
+        return loader.load(new StringReader(csv));
+    }
+}
@@ -0,0 +1,98 @@
+package com.jsp.lms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.CompactLibrary;
+import com.jsp.lms.model.Library;
+import com.jsp.lms.model.OffHeapLibrary;
+
+// Synthetic catalogs shared by the benchmarks: titles are unique, each author
+// has about twenty books and every book starts with two copies on the shelf
+final class Catalogs {
+    static final int PROBES = 4096; // lookup keys per benchmark, a power of two
+    
+    private Catalogs() {
+    }
+    
+    static Library build(int size, boolean threadSafe) {
+        return build(size, threadSafe, "default");
+    }
+    
+    // engine is "default" for Library, "compact" for CompactLibrary or
+    // "offheap" for OffHeapLibrary
+    static Library build(int size, boolean threadSafe, String engine) {
+        Library library = newLibrary(engine, threadSafe);
+        List<Book> batch = new ArrayList<>(8192);
+        for (int i = 0; i < size; i++) {
+            batch.add(new Book(title(i), author(i, size), 5 + i % 95, null, 2));
+            if (batch.size() == 8192) {
+                library.addBooks(batch);
+                batch.clear();
+            }
+        }
+        library.addBooks(batch);
+        return library;
+    }
+    
+    static Library newLibrary(String engine, boolean threadSafe) {
+        switch (engine) {
+            case "compact":
+                return new CompactLibrary(threadSafe);
+            case "offheap":
+                return new OffHeapLibrary(threadSafe);
+            default:
+                return new Library(threadSafe);
+        }
+    }
+    
+    static String title(int i) {
+        return "Title " + i;
+    }
+    
+    static String author(int i, int size) {
+        return "Author " + i % Math.max(1, size / 20);
+    }
+    
+    // A distinct ISBN-13 with a valid check digit, 978-0 followed by i
+    static String isbn(int i) {
+        long body = 978_000_000_000L + i;
+        int sum = 0;
+        long rest = body;
+        for (int digit = 0; digit < 12; digit++) {
+            sum += (int) (rest % 10) * (digit % 2 == 0 ? 3 : 1); // weights run 1, 3, ... from the left
+            rest /= 10;
+        }
+        return Long.toString(body * 10 + (10 - sum % 10) % 10);
+    }
+    
+    // Random existing titles, authors and ids to cycle through
+    static String[] titles(int size, long seed) {
+        Random random = new Random(seed);
+        String[] titles = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            titles[i] = title(random.nextInt(size));
+        }
+        return titles;
+    }
+    
+    static String[] authors(int size, long seed) {
+        Random random = new Random(seed);
+        String[] authors = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            authors[i] = author(random.nextInt(size), size);
+        }
+        return authors;
+    }
+    
+    static long[] ids(int size, long seed) {
+        Random random = new Random(seed);
+        long[] ids = new long[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            ids[i] = 1 + random.nextInt(size); // ids are handed out from 1 in insertion order
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,22 @@
+package com.jsp.lms.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+// Every engine, up to a million books
+public class ConcurrentBorrowBenchmark extends ConcurrentBorrowOperations {
+    @Param({"1000", "100000", "1000000"})
+    int size;
+    
+    @Param({"default", "compact", "offheap"})
+    String engine;
+    
+    @Override
+    int size() {
+        return size;
+    }
+    
+    @Override
+    String engine() {
+        return engine;
+    }
+}
@@ -0,0 +1,91 @@
+package com.jsp.lms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.Library;
+
+// Borrowers, returners and readers sharing one thread-safe library. With a
+// small hot set every thread hits the same few books, as with a bestseller.
+// Subclasses pick the catalog sizes and engines to run the mix on.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public abstract class ConcurrentBorrowOperations {
+    @Param({"0", "16"}) // 0 spreads the load over the whole catalog
+    int hotSet;
+    
+    Library library;
+    String[] titles;
+    
+    abstract int size();
+    
+    abstract String engine();
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        int size = size();
+        library = Catalogs.build(size, true, engine());
+        titles = Catalogs.titles(hotSet > 0 ? Math.min(hotSet, size) : size, 1);
+    }
+    
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            position = (int) (Thread.currentThread().getId() * 977); // threads start apart
+        }
+        
+        String next(String[] titles) {
+            return titles[position++ & (Catalogs.PROBES - 1)];
+        }
+    }
+    
+    @Benchmark
+    @Group("mix")
+    @GroupThreads(2)
+    public boolean borrow(Cursor cursor) {
+        return library.borrowBook(cursor.next(titles));
+    }
+    
+    @Benchmark
+    @Group("mix")
+    @GroupThreads(2)
+    public boolean returnBook(Cursor cursor) {
+        return library.returnBook(cursor.next(titles));
+    }
+    
+    @Benchmark
+    @Group("mix")
+    @GroupThreads(1)
+    public Book lookup(Cursor cursor) {
+        return library.findBookByName(cursor.next(titles));
+    }
+    
+    @Benchmark
+    @Group("mix")
+    @GroupThreads(1)
+    public int totals() {
+        return library.getTotalBookCopies();
+    }
+}
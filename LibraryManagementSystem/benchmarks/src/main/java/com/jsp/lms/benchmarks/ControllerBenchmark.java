@@ -0,0 +1,69 @@
+package com.jsp.lms.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jsp.lms.controller.Controller;
+import com.jsp.lms.model.Book;
+
+// The same hot paths through the Controller, which the View calls
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ControllerBenchmark {
+    @Param({"1000", "100000", "1000000"}) // the default engine; 10M would not fit the heap
+    int size;
+    
+    Controller controller;
+    String[] titles;
+    String[] authors;
+    int cursor;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        controller = new Controller(Catalogs.build(size, false));
+        titles = Catalogs.titles(size, 1);
+        authors = Catalogs.authors(size, 2);
+    }
+    
+    private int next() {
+        return cursor++ & (Catalogs.PROBES - 1);
+    }
+    
+    @Benchmark
+    public Book getBook() {
+        return controller.getBook(titles[next()]);
+    }
+    
+    @Benchmark
+    public List<Book> searchBooksByAuthor() {
+        return controller.searchBooksByAuthor(authors[next()]);
+    }
+    
+    @Benchmark
+    public boolean borrowAndReturnBook() {
+        String title = titles[next()];
+        return controller.borrowBook(title) & controller.returnBook(title);
+    }
+    
+    @Benchmark
+    public int getTotalBookCopies() {
+        return controller.getTotalBookCopies();
+    }
+}
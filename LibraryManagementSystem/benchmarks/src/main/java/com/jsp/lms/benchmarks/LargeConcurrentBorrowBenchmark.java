@@ -0,0 +1,23 @@
+package com.jsp.lms.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+// Ten million books, on the engines that store them in columns or off the
+// heap. The default engine's objects alone would fill most of the 4 GB heap.
+public class LargeConcurrentBorrowBenchmark extends ConcurrentBorrowOperations {
+    @Param({"10000000"})
+    int size;
+    
+    @Param({"compact", "offheap"})
+    String engine;
+    
+    @Override
+    int size() {
+        return size;
+    }
+    
+    @Override
+    String engine() {
+        return engine;
+    }
+}
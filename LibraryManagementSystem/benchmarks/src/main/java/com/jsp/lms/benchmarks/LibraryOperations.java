@@ -0,0 +1,125 @@
+package com.jsp.lms.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.CatalogStatistics;
+import com.jsp.lms.model.Library;
+
+// Single-threaded Library operations against catalogs of increasing size.
+// Subclasses pick the catalog sizes and engines to run them on.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public abstract class LibraryOperations {
+    Library library;
+    String[] titles;
+    String[] authors;
+    long[] ids;
+    int cursor;
+    
+    // addBook grows the catalog, so each iteration removes what it added
+    long firstAddedId;
+    int added;
+    
+    abstract int size();
+    
+    abstract String engine();
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        int size = size();
+        library = Catalogs.build(size, false, engine());
+        titles = Catalogs.titles(size, 1);
+        authors = Catalogs.authors(size, 2);
+        ids = Catalogs.ids(size, 3);
+    }
+    
+    @Setup(Level.Iteration)
+    public void markAdded() {
+        firstAddedId = library.getLastBookId() + 1;
+    }
+    
+    @TearDown(Level.Iteration)
+    public void removeAdded() {
+        for (long id = firstAddedId; id <= library.getLastBookId(); id++) {
+            library.removeBook(id);
+        }
+    }
+    
+    private int next() {
+        return cursor++ & (Catalogs.PROBES - 1);
+    }
+    
+    @Benchmark
+    public Book findBookByName() {
+        return library.findBookByName(titles[next()]);
+    }
+    
+    @Benchmark
+    public Book findBookById() {
+        return library.findBookById(ids[next()]);
+    }
+    
+    @Benchmark
+    public List<Book> findBooksByAuthor() {
+        return library.findBooksByAuthor(authors[next()]);
+    }
+    
+    @Benchmark
+    public boolean addBook() {
+        return library.addBook(new Book("Added " + added++, "Benchmark Author", 10));
+    }
+    
+    @Benchmark
+    public boolean borrowAndReturnBook() {
+        String title = titles[next()];
+        return library.borrowBook(title) & library.returnBook(title);
+    }
+    
+    @Benchmark
+    public boolean borrowAndReturnBookById() {
+        long id = ids[next()];
+        return library.borrowBook(id) & library.returnBook(id);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Book> getAvailableBooks() {
+        return library.getAvailableBooks();
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Book> getBooks() {
+        return library.getBooks();
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CatalogStatistics computeStatistics() {
+        return library.computeStatistics();
+    }
+    
+    @Benchmark
+    public int getTotalBookCopies() {
+        return library.getTotalBookCopies();
+    }
+}
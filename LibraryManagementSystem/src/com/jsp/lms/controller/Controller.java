@@ -1,10 +1,19 @@
 package com.jsp.lms.controller;
 
+import com.jsp.lms.io.CatalogJournal;
+import com.jsp.lms.io.CatalogLoader;
+import com.jsp.lms.io.ImportResult;
+import com.jsp.lms.io.MappedCatalog;
 import com.jsp.lms.model.Book;
+import com.jsp.lms.model.CatalogStatistics;
 import com.jsp.lms.model.Library;
+import com.jsp.lms.model.Loan;
 
 public class Controller {
     private final Library library;
+    private final ControllerMetrics metrics = new ControllerMetrics();
+    private CatalogJournal journal;
+    private static final int DEFAULT_LOAN_DAYS = 14;
     
     public Controller(Library library) {
         this.library = library;
@@ -16,99 +25,599 @@ public class Controller {
     
     // Book management methods
     public boolean addBook(Book book) {
+        long start = metrics.start();
         try {
             return library.addBook(book);
         } catch (Exception e) {
+            metrics.error(Operation.ADD_BOOK, start, e);
             System.err.println("Error adding book: " + e.getMessage());
             return false;
+        } finally {
+            metrics.stop(Operation.ADD_BOOK, start);
+        }
+    }
+    
+    public int addBooks(java.util.List<Book> books) {
+        long start = metrics.start();
+        try {
+            return library.addBooks(books);
+        } catch (Exception e) {
+            metrics.error(Operation.ADD_BOOKS, start, e);
+            System.err.println("Error adding books: " + e.getMessage());
+            return 0;
+        } finally {
+            metrics.stop(Operation.ADD_BOOKS, start);
+        }
+    }
+    
+    // Bulk import from a CSV or TSV file; returns null if the file cannot be read
+    public ImportResult importBooks(String filePath, int parallelism) {
+        long start = metrics.start();
+        try {
+            CatalogLoader loader = new CatalogLoader(library);
+            loader.setParallelism(parallelism);
+            return loader.load(java.nio.file.Paths.get(filePath));
+        } catch (Exception e) {
+            metrics.error(Operation.IMPORT_BOOKS, start, e);
+            System.err.println("Error importing books: " + e.getMessage());
+            return null;
+        } finally {
+            metrics.stop(Operation.IMPORT_BOOKS, start);
+        }
+    }
+    
+    // Persistence: recovers the catalog saved in the directory into the (empty)
+    // library and journals every change from then on
+    public boolean openJournal(String directory) {
+        long start = metrics.start();
+        try {
+            closeJournal();
+            journal = CatalogJournal.open(java.nio.file.Paths.get(directory), library, CatalogJournal.SyncPolicy.INTERVAL);
+            return true;
+        } catch (Exception e) {
+            metrics.error(Operation.OPEN_JOURNAL, start, e);
+            System.err.println("Error opening journal: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.OPEN_JOURNAL, start);
+        }
+    }
+    
+    public void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        long start = metrics.start();
+        try {
+            journal.close();
+        } catch (Exception e) {
+            metrics.error(Operation.CLOSE_JOURNAL, start, e);
+            System.err.println("Error closing journal: " + e.getMessage());
+        } finally {
+            journal = null;
+            metrics.stop(Operation.CLOSE_JOURNAL, start);
+        }
+    }
+    
+    // Binary snapshot: save writes the whole catalog, open serves a saved one
+    // lazily from a memory mapping (the library must still be empty)
+    public boolean saveSnapshot(String filePath) {
+        long start = metrics.start();
+        try {
+            MappedCatalog.write(java.nio.file.Paths.get(filePath), library);
+            return true;
+        } catch (Exception e) {
+            metrics.error(Operation.SAVE_SNAPSHOT, start, e);
+            System.err.println("Error saving snapshot: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.SAVE_SNAPSHOT, start);
+        }
+    }
+    
+    public boolean openSnapshot(String filePath) {
+        long start = metrics.start();
+        try {
+            library.loadLazily(MappedCatalog.open(java.nio.file.Paths.get(filePath)));
+            return true;
+        } catch (Exception e) {
+            metrics.error(Operation.OPEN_SNAPSHOT, start, e);
+            System.err.println("Error opening snapshot: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.OPEN_SNAPSHOT, start);
         }
     }
     
     public Book getBook(String bookName) {
+        long start = metrics.start();
         try {
             return library.findBookByName(bookName);
         } catch (Exception e) {
+            metrics.error(Operation.GET_BOOK, start, e);
             System.err.println("Error finding book: " + e.getMessage());
             return null;
+        } finally {
+            metrics.stop(Operation.GET_BOOK, start);
+        }
+    }
+    
+    public Book getBook(long bookId) {
+        long start = metrics.start();
+        try {
+            return library.findBookById(bookId);
+        } catch (Exception e) {
+            metrics.error(Operation.GET_BOOK, start, e);
+            System.err.println("Error finding book: " + e.getMessage());
+            return null;
+        } finally {
+            metrics.stop(Operation.GET_BOOK, start);
         }
     }
     
     public boolean updateBook(Book existingBook, Book updatedBook) {
+        long start = metrics.start();
         try {
             return library.updateBook(existingBook, updatedBook);
         } catch (Exception e) {
+            metrics.error(Operation.UPDATE_BOOK, start, e);
+            System.err.println("Error updating book: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.UPDATE_BOOK, start);
+        }
+    }
+    
+    public boolean updateBook(long bookId, Book updatedBook) {
+        long start = metrics.start();
+        try {
+            return library.updateBook(bookId, updatedBook);
+        } catch (Exception e) {
+            metrics.error(Operation.UPDATE_BOOK, start, e);
             System.err.println("Error updating book: " + e.getMessage());
             return false;
+        } finally {
+            metrics.stop(Operation.UPDATE_BOOK, start);
         }
     }
     
     public boolean removeBook(String bookName) {
+        long start = metrics.start();
         try {
             return library.removeBook(bookName);
         } catch (Exception e) {
+            metrics.error(Operation.REMOVE_BOOK, start, e);
+            System.err.println("Error removing book: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.REMOVE_BOOK, start);
+        }
+    }
+    
+    public boolean removeBook(long bookId) {
+        long start = metrics.start();
+        try {
+            return library.removeBook(bookId);
+        } catch (Exception e) {
+            metrics.error(Operation.REMOVE_BOOK, start, e);
             System.err.println("Error removing book: " + e.getMessage());
             return false;
+        } finally {
+            metrics.stop(Operation.REMOVE_BOOK, start);
         }
     }
     
     // Additional business methods
     public boolean borrowBook(String bookName) {
+        long start = metrics.start();
         try {
             return library.borrowBook(bookName);
         } catch (Exception e) {
+            metrics.error(Operation.BORROW_BOOK, start, e);
             System.err.println("Error borrowing book: " + e.getMessage());
             return false;
+        } finally {
+            metrics.stop(Operation.BORROW_BOOK, start);
         }
     }
     
     public boolean returnBook(String bookName) {
+        long start = metrics.start();
         try {
             return library.returnBook(bookName);
         } catch (Exception e) {
+            metrics.error(Operation.RETURN_BOOK, start, e);
+            System.err.println("Error returning book: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.RETURN_BOOK, start);
+        }
+    }
+    
+    public boolean borrowBook(long bookId) {
+        long start = metrics.start();
+        try {
+            return library.borrowBook(bookId);
+        } catch (Exception e) {
+            metrics.error(Operation.BORROW_BOOK, start, e);
+            System.err.println("Error borrowing book: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.BORROW_BOOK, start);
+        }
+    }
+    
+    public boolean returnBook(long bookId) {
+        long start = metrics.start();
+        try {
+            return library.returnBook(bookId);
+        } catch (Exception e) {
+            metrics.error(Operation.RETURN_BOOK, start, e);
+            System.err.println("Error returning book: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.RETURN_BOOK, start);
+        }
+    }
+    
+    public Book findByIsbn(String isbn) {
+        long start = metrics.start();
+        try {
+            return library.findByIsbn(isbn);
+        } catch (Exception e) {
+            metrics.error(Operation.FIND_BY_ISBN, start, e);
+            System.err.println("Error finding book by ISBN: " + e.getMessage());
+            return null;
+        } finally {
+            metrics.stop(Operation.FIND_BY_ISBN, start);
+        }
+    }
+    
+    public boolean borrowByIsbn(String isbn) {
+        long start = metrics.start();
+        try {
+            return library.borrowByIsbn(isbn);
+        } catch (Exception e) {
+            metrics.error(Operation.BORROW_BY_ISBN, start, e);
+            System.err.println("Error borrowing book by ISBN: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.BORROW_BY_ISBN, start);
+        }
+    }
+    
+    public boolean returnByIsbn(String isbn) {
+        long start = metrics.start();
+        try {
+            return library.returnByIsbn(isbn);
+        } catch (Exception e) {
+            metrics.error(Operation.RETURN_BY_ISBN, start, e);
+            System.err.println("Error returning book by ISBN: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.RETURN_BY_ISBN, start);
+        }
+    }
+    
+    // Loans: borrowing for a named borrower records who has the copy and when it is due
+    public Loan borrowBook(String borrower, long bookId, int loanDays) {
+        long start = metrics.start();
+        try {
+            return library.borrowBook(borrower, bookId, java.time.Duration.ofDays(loanDays));
+        } catch (Exception e) {
+            metrics.error(Operation.BORROW_BOOK, start, e);
+            System.err.println("Error borrowing book: " + e.getMessage());
+            return null;
+        } finally {
+            metrics.stop(Operation.BORROW_BOOK, start);
+        }
+    }
+    
+    public boolean returnBook(String borrower, long bookId) {
+        long start = metrics.start();
+        try {
+            return library.returnBook(borrower, bookId);
+        } catch (Exception e) {
+            metrics.error(Operation.RETURN_BOOK, start, e);
             System.err.println("Error returning book: " + e.getMessage());
             return false;
+        } finally {
+            metrics.stop(Operation.RETURN_BOOK, start);
+        }
+    }
+    
+    // Holds: the future completes with the loan once a copy is free, first come
+    // first served; a timeout of 0 waits until the hold is filled or cancelled
+    public java.util.concurrent.CompletableFuture<Loan> borrowAsync(String bookName, String patron) {
+        long start = metrics.start();
+        try {
+            return library.borrowAsync(patron, bookName, java.time.Duration.ofDays(DEFAULT_LOAN_DAYS), null);
+        } catch (Exception e) {
+            metrics.error(Operation.BORROW_ASYNC, start, e);
+            System.err.println("Error placing hold: " + e.getMessage());
+            return null;
+        } finally {
+            metrics.stop(Operation.BORROW_ASYNC, start);
+        }
+    }
+    
+    public java.util.concurrent.CompletableFuture<Loan> borrowAsync(long bookId, String patron, int loanDays,
+            long timeoutMinutes) {
+        long start = metrics.start();
+        try {
+            java.time.Duration timeout = timeoutMinutes > 0 ? java.time.Duration.ofMinutes(timeoutMinutes) : null;
+            return library.borrowAsync(patron, bookId, java.time.Duration.ofDays(loanDays), timeout);
+        } catch (Exception e) {
+            metrics.error(Operation.BORROW_ASYNC, start, e);
+            System.err.println("Error placing hold: " + e.getMessage());
+            return null;
+        } finally {
+            metrics.stop(Operation.BORROW_ASYNC, start);
+        }
+    }
+    
+    public int getHoldCount(long bookId) {
+        long start = metrics.start();
+        try {
+            return library.getHoldCount(bookId);
+        } catch (Exception e) {
+            metrics.error(Operation.GET_HOLD_COUNT, start, e);
+            System.err.println("Error getting hold count: " + e.getMessage());
+            return 0;
+        } finally {
+            metrics.stop(Operation.GET_HOLD_COUNT, start);
+        }
+    }
+    
+    public java.util.List<Loan> getLoans(String borrower) {
+        long start = metrics.start();
+        try {
+            return library.getLoanLedger().getLoans(borrower);
+        } catch (Exception e) {
+            metrics.error(Operation.GET_LOANS, start, e);
+            System.err.println("Error getting loans: " + e.getMessage());
+            return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.GET_LOANS, start);
+        }
+    }
+    
+    public java.util.List<Loan> getOverdueLoans() {
+        long start = metrics.start();
+        try {
+            return library.getLoanLedger().getOverdueLoans();
+        } catch (Exception e) {
+            metrics.error(Operation.GET_OVERDUE_LOANS, start, e);
+            System.err.println("Error getting overdue loans: " + e.getMessage());
+            return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.GET_OVERDUE_LOANS, start);
+        }
+    }
+    
+    public java.util.List<Loan> sweepOverdueLoans() {
+        long start = metrics.start();
+        try {
+            return library.getLoanLedger().sweepOverdue();
+        } catch (Exception e) {
+            metrics.error(Operation.SWEEP_OVERDUE_LOANS, start, e);
+            System.err.println("Error sweeping overdue loans: " + e.getMessage());
+            return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.SWEEP_OVERDUE_LOANS, start);
+        }
+    }
+    
+    public java.util.List<String> completeTitle(String prefix, int limit) {
+        long start = metrics.start();
+        try {
+            return library.completeTitle(prefix, limit);
+        } catch (Exception e) {
+            metrics.error(Operation.COMPLETE_TITLE, start, e);
+            System.err.println("Error completing title: " + e.getMessage());
+            return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.COMPLETE_TITLE, start);
+        }
+    }
+    
+    public java.util.List<String> suggestTitles(String title, int limit) {
+        long start = metrics.start();
+        try {
+            return library.suggestTitles(title, limit);
+        } catch (Exception e) {
+            metrics.error(Operation.SUGGEST_TITLES, start, e);
+            System.err.println("Error suggesting titles: " + e.getMessage());
+            return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.SUGGEST_TITLES, start);
+        }
+    }
+    
+    public java.util.List<Book> searchBooks(String query, boolean matchAll, int limit) {
+        long start = metrics.start();
+        try {
+            return library.searchBooks(query, matchAll, limit);
+        } catch (Exception e) {
+            metrics.error(Operation.SEARCH_BOOKS, start, e);
+            System.err.println("Error searching books: " + e.getMessage());
+            return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.SEARCH_BOOKS, start);
+        }
+    }
+    
+    public java.util.List<Book> findBooksByPrice(double minPrice, double maxPrice, int limit) {
+        long start = metrics.start();
+        try {
+            return library.findBooksByPrice(minPrice, maxPrice, limit);
+        } catch (Exception e) {
+            metrics.error(Operation.FIND_BOOKS_BY_PRICE, start, e);
+            System.err.println("Error finding books by price: " + e.getMessage());
+            return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.FIND_BOOKS_BY_PRICE, start);
+        }
+    }
+    
+    public java.util.List<Book> getMostExpensiveBooks(int limit) {
+        long start = metrics.start();
+        try {
+            return library.getMostExpensiveBooks(limit);
+        } catch (Exception e) {
+            metrics.error(Operation.GET_MOST_EXPENSIVE_BOOKS, start, e);
+            System.err.println("Error getting most expensive books: " + e.getMessage());
+            return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.GET_MOST_EXPENSIVE_BOOKS, start);
+        }
+    }
+    
+    public java.util.List<Book> getCheapestBooks(int limit) {
+        long start = metrics.start();
+        try {
+            return library.getCheapestBooks(limit);
+        } catch (Exception e) {
+            metrics.error(Operation.GET_CHEAPEST_BOOKS, start, e);
+            System.err.println("Error getting cheapest books: " + e.getMessage());
+            return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.GET_CHEAPEST_BOOKS, start);
         }
     }
     
     public java.util.List<Book> searchBooksByAuthor(String authorName) {
+        long start = metrics.start();
         try {
             return library.findBooksByAuthor(authorName);
         } catch (Exception e) {
+            metrics.error(Operation.SEARCH_BOOKS_BY_AUTHOR, start, e);
             System.err.println("Error searching books by author: " + e.getMessage());
             return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.SEARCH_BOOKS_BY_AUTHOR, start);
         }
     }
     
     public java.util.List<Book> getAvailableBooks() {
+        long start = metrics.start();
         try {
             return library.getAvailableBooks();
         } catch (Exception e) {
+            metrics.error(Operation.GET_AVAILABLE_BOOKS, start, e);
             System.err.println("Error getting available books: " + e.getMessage());
             return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.GET_AVAILABLE_BOOKS, start);
         }
     }
     
     public java.util.List<Book> getAllBooks() {
+        long start = metrics.start();
         try {
             return library.getBooks();
         } catch (Exception e) {
+            metrics.error(Operation.GET_ALL_BOOKS, start, e);
             System.err.println("Error getting all books: " + e.getMessage());
             return new java.util.ArrayList<>();
+        } finally {
+            metrics.stop(Operation.GET_ALL_BOOKS, start);
+        }
+    }
+    
+    // Streams the books to the action instead of building a list; false if the
+    // library stopped early. I/O failures of the action itself, such as a client
+    // that went away, are the caller's to handle and pass through unrecorded.
+    public boolean forEachBook(boolean availableOnly, java.util.function.Consumer<? super Book> action) {
+        long start = metrics.start();
+        try {
+            library.forEachBook(availableOnly, action);
+            return true;
+        } catch (java.io.UncheckedIOException e) {
+            throw e;
+        } catch (Exception e) {
+            metrics.error(Operation.FOR_EACH_BOOK, start, e);
+            System.err.println("Error listing books: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.stop(Operation.FOR_EACH_BOOK, start);
         }
     }
     
     public int getTotalBooks() {
-        return library.getTotalBooks();
+        long start = metrics.start();
+        try {
+            return library.getTotalBooks();
+        } catch (Exception e) {
+            metrics.error(Operation.GET_TOTAL_BOOKS, start, e);
+            System.err.println("Error getting total books: " + e.getMessage());
+            return 0;
+        } finally {
+            metrics.stop(Operation.GET_TOTAL_BOOKS, start);
+        }
     }
     
     public int getTotalBookCopies() {
-        return library.getTotalBookCopies();
+        long start = metrics.start();
+        try {
+            return library.getTotalBookCopies();
+        } catch (Exception e) {
+            metrics.error(Operation.GET_TOTAL_BOOK_COPIES, start, e);
+            System.err.println("Error getting total book copies: " + e.getMessage());
+            return 0;
+        } finally {
+            metrics.stop(Operation.GET_TOTAL_BOOK_COPIES, start);
+        }
+    }
+    
+    public int getAvailableTitleCount() {
+        long start = metrics.start();
+        try {
+            return library.getAvailableTitleCount();
+        } catch (Exception e) {
+            metrics.error(Operation.GET_AVAILABLE_TITLE_COUNT, start, e);
+            System.err.println("Error getting available title count: " + e.getMessage());
+            return 0;
+        } finally {
+            metrics.stop(Operation.GET_AVAILABLE_TITLE_COUNT, start);
+        }
+    }
+    
+    public double getTotalInventoryValue() {
+        long start = metrics.start();
+        try {
+            return library.getTotalInventoryValue();
+        } catch (Exception e) {
+            metrics.error(Operation.GET_TOTAL_INVENTORY_VALUE, start, e);
+            System.err.println("Error getting total inventory value: " + e.getMessage());
+            return 0;
+        } finally {
+            metrics.stop(Operation.GET_TOTAL_INVENTORY_VALUE, start);
+        }
+    }
+    
+    public CatalogStatistics getStatistics() {
+        long start = metrics.start();
+        try {
+            return library.computeStatistics();
+        } catch (Exception e) {
+            metrics.error(Operation.GET_STATISTICS, start, e);
+            System.err.println("Error computing statistics: " + e.getMessage());
+            return null;
+        } finally {
+            metrics.stop(Operation.GET_STATISTICS, start);
+        }
     }
     
     public Library getLibrary() {
         return library;
     }
     
+    // Timing and error counts of every operation above
+    public ControllerMetrics getMetrics() {
+        return metrics;
+    }
+    
     // Utility methods
     public boolean isBookAvailable(String bookName) {
         Book book = getBook(bookName);
@@ -0,0 +1,129 @@
+package com.jsp.lms.controller;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Call counts, latency histograms and errors by exception type for every
+// Controller operation. Recording takes no lock: counters are LongAdders and
+// each latency lands in a fixed LatencyHistogram. When disabled, an operation
+// costs one volatile read and a branch on the way in and a branch on the way
+// out; nothing is timed or counted.
+public class ControllerMetrics implements ControllerMetricsMXBean {
+    private final OperationMetrics[] operations = new OperationMetrics[Operation.values().length];
+    private volatile boolean enabled = true;
+    private ObjectName registeredName;
+    
+    public ControllerMetrics() {
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new OperationMetrics();
+        }
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    // Recording, called by the Controller around each library call: start
+    // returns 0 when disabled, which makes stop and error do nothing
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+    
+    void stop(Operation operation, long start) {
+        if (start != 0) {
+            OperationMetrics metrics = operations[operation.ordinal()];
+            metrics.calls.increment();
+            metrics.latency.record(System.nanoTime() - start);
+        }
+    }
+    
+    void error(Operation operation, long start, Exception e) {
+        if (start != 0) {
+            operations[operation.ordinal()].errorsByType
+                    .computeIfAbsent(e.getClass().getName(), type -> new LongAdder()).increment();
+        }
+    }
+    
+    public OperationStatistics getStatistics(Operation operation) {
+        return operations[operation.ordinal()].snapshot(operation);
+    }
+    
+    @Override
+    public List<OperationStatistics> getOperations() {
+        List<OperationStatistics> called = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            if (operations[operation.ordinal()].calls.sum() > 0) {
+                called.add(getStatistics(operation));
+            }
+        }
+        called.sort(Comparator.comparingDouble(OperationStatistics::getP99Micros).reversed());
+        return called;
+    }
+    
+    // Counts recorded while resetting may be kept or lost
+    @Override
+    public void reset() {
+        for (OperationMetrics metrics : operations) {
+            metrics.calls.reset();
+            metrics.latency.reset();
+            metrics.errorsByType.clear();
+        }
+    }
+    
+    // JMX: registers these metrics with the platform MBean server as
+    // com.jsp.lms:type=ControllerMetrics,name=<name>
+    public synchronized void registerMBean(String name) {
+        try {
+            unregisterMBean();
+            ObjectName objectName = new ObjectName("com.jsp.lms:type=ControllerMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            registeredName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics: " + e.getMessage(), e);
+        }
+    }
+    
+    public synchronized void unregisterMBean() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registeredName)) {
+                server.unregisterMBean(registeredName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister metrics: " + e.getMessage(), e);
+        } finally {
+            registeredName = null;
+        }
+    }
+    
+    private static final class OperationMetrics {
+        final LongAdder calls = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Map<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+        
+        OperationStatistics snapshot(Operation operation) {
+            Map<String, Long> errors = new TreeMap<>();
+            errorsByType.forEach((type, count) -> errors.put(type, count.sum()));
+            return new OperationStatistics(operation, calls.sum(), errors, latency);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.jsp.lms.controller;
+
+import java.util.List;
+
+// Management interface of ControllerMetrics, as seen from JConsole or any
+// other JMX client
+public interface ControllerMetricsMXBean {
+    boolean isEnabled();
+    
+    void setEnabled(boolean enabled);
+    
+    // Every operation called since the last reset, slowest p99 first
+    List<OperationStatistics> getOperations();
+    
+    void reset();
+}
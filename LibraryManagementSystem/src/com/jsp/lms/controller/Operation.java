@@ -0,0 +1,51 @@
+package com.jsp.lms.controller;
+
+// The Controller operations that ControllerMetrics times, one per method name;
+// overloads of a method share its operation
+public enum Operation {
+    ADD_BOOK("addBook"),
+    ADD_BOOKS("addBooks"),
+    IMPORT_BOOKS("importBooks"),
+    OPEN_JOURNAL("openJournal"),
+    CLOSE_JOURNAL("closeJournal"),
+    SAVE_SNAPSHOT("saveSnapshot"),
+    OPEN_SNAPSHOT("openSnapshot"),
+    GET_BOOK("getBook"),
+    UPDATE_BOOK("updateBook"),
+    REMOVE_BOOK("removeBook"),
+    BORROW_BOOK("borrowBook"),
+    RETURN_BOOK("returnBook"),
+    FIND_BY_ISBN("findByIsbn"),
+    BORROW_BY_ISBN("borrowByIsbn"),
+    RETURN_BY_ISBN("returnByIsbn"),
+    BORROW_ASYNC("borrowAsync"),
+    GET_HOLD_COUNT("getHoldCount"),
+    GET_LOANS("getLoans"),
+    GET_OVERDUE_LOANS("getOverdueLoans"),
+    SWEEP_OVERDUE_LOANS("sweepOverdueLoans"),
+    COMPLETE_TITLE("completeTitle"),
+    SUGGEST_TITLES("suggestTitles"),
+    SEARCH_BOOKS("searchBooks"),
+    FIND_BOOKS_BY_PRICE("findBooksByPrice"),
+    GET_MOST_EXPENSIVE_BOOKS("getMostExpensiveBooks"),
+    GET_CHEAPEST_BOOKS("getCheapestBooks"),
+    SEARCH_BOOKS_BY_AUTHOR("searchBooksByAuthor"),
+    GET_AVAILABLE_BOOKS("getAvailableBooks"),
+    GET_ALL_BOOKS("getAllBooks"),
+    FOR_EACH_BOOK("forEachBook"),
+    GET_TOTAL_BOOKS("getTotalBooks"),
+    GET_TOTAL_BOOK_COPIES("getTotalBookCopies"),
+    GET_AVAILABLE_TITLE_COUNT("getAvailableTitleCount"),
+    GET_TOTAL_INVENTORY_VALUE("getTotalInventoryValue"),
+    GET_STATISTICS("getStatistics");
+    
+    private final String methodName;
+    
+    Operation(String methodName) {
+        this.methodName = methodName;
+    }
+    
+    public String getMethodName() {
+        return methodName;
+    }
+}
@@ -0,0 +1,85 @@
+package com.jsp.lms.controller;
+
+import java.util.Collections;
+import java.util.Map;
+
+// Counts and latencies of one Controller operation since the metrics were
+// enabled or last reset. Latencies are in microseconds; percentiles are
+// accurate to about 3%.
+public class OperationStatistics {
+    private final String operation;
+    private final long calls;
+    private final long errors;
+    private final Map<String, Long> errorsByType;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+    
+    OperationStatistics(Operation operation, long calls, Map<String, Long> errorsByType, LatencyHistogram latency) {
+        this.operation = operation.getMethodName();
+        this.calls = calls;
+        long errors = 0;
+        for (long count : errorsByType.values()) {
+            errors += count;
+        }
+        this.errors = errors;
+        this.errorsByType = Collections.unmodifiableMap(errorsByType);
+        this.meanMicros = calls > 0 ? latency.getTotalNanos() / 1000.0 / calls : 0;
+        this.p50Micros = latency.getValueAtQuantile(0.5) / 1000.0;
+        this.p90Micros = latency.getValueAtQuantile(0.9) / 1000.0;
+        this.p99Micros = latency.getValueAtQuantile(0.99) / 1000.0;
+        this.p999Micros = latency.getValueAtQuantile(0.999) / 1000.0;
+        this.maxMicros = latency.getMaxNanos() / 1000.0;
+    }
+    
+    // Getters
+    public String getOperation() {
+        return operation;
+    }
+    
+    public long getCalls() {
+        return calls;
+    }
+    
+    // Calls that threw, in total and by exception class
+    public long getErrors() {
+        return errors;
+    }
+    
+    public Map<String, Long> getErrorsByType() {
+        return errorsByType;
+    }
+    
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+    
+    public double getP50Micros() {
+        return p50Micros;
+    }
+    
+    public double getP90Micros() {
+        return p90Micros;
+    }
+    
+    public double getP99Micros() {
+        return p99Micros;
+    }
+    
+    public double getP999Micros() {
+        return p999Micros;
+    }
+    
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s [Calls: %d, Errors: %d, Mean: %.1fus, p50: %.1fus, p99: %.1fus, Max: %.1fus]",
+                operation, calls, errors, meanMicros, p50Micros, p99Micros, maxMicros);
+    }
+}
@@ -0,0 +1,696 @@
+package com.jsp.lms.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.CatalogListener;
+import com.jsp.lms.model.Library;
+
+// Write-ahead journal that makes a Library survive restarts.
+//
+// Every catalog change is appended to a checksummed, append-only log segment
+// by a background writer thread, so the library's own calls only queue a small
+// record. Quantity changes are logged as deltas. The library reports each one
+// while it still holds the book, so a book's deltas are queued, and replayed,
+// in the order they were made. Segments roll over at a size limit and closed
+// segments are compacted into a snapshot by replaying them, off the hot path,
+// into a scratch library. Recovery loads the newest snapshot and replays the
+// segments written after it, discarding a torn record at the end of the last
+// one.
+//
+// With SyncPolicy.ALWAYS a change returns only once its record is on disk;
+// concurrent changes share one fsync (group commit). The wait happens after
+// the library has let go of its lock and the book (Library.afterChange), so
+// it does not hold up other threads. SyncPolicy.INTERVAL
+// bounds the loss window to the sync interval and keeps borrow/return latency
+// at the cost of a queue offer.
+public class CatalogJournal implements CatalogListener, Closeable {
+    public enum SyncPolicy {
+        NEVER,    // leave flushing to the operating system
+        INTERVAL, // fsync at most once per sync interval
+        ALWAYS    // fsync before a change returns, shared across concurrent changes
+    }
+    
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    
+    static final int JOURNAL_MAGIC = 0x4C4D534A; // "LMSJ"
+    static final int SNAPSHOT_MAGIC = 0x4C4D5353; // "LMSS"
+    static final int FORMAT_VERSION = 1;
+    
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte QUANTITY = 3;
+    private static final byte PRICE = 4;
+    
+    private static final int MAX_RECORD_BYTES = 16 << 20;
+    private static final int MAX_PENDING_SYNC = 256; // force a group commit past this many waiters
+    
+    private final Path directory;
+    private final Library library;
+    private final SyncPolicy syncPolicy;
+    private final long syncIntervalNanos;
+    private final long segmentBytes;
+    
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final Object durableMonitor = new Object();
+    private final Thread writer;
+    private final ExecutorService compactor;
+    private volatile boolean closed;
+    private volatile boolean idle; // the writer is parked, or about to park, on an empty queue
+    private volatile IOException failure;
+    
+    // Owned by the writer thread
+    private FileChannel segment;
+    private long segmentSequence;
+    private long segmentSize;
+    
+    private CatalogJournal(Path directory, Library library, SyncPolicy syncPolicy,
+            long syncIntervalMillis, long segmentBytes) {
+        this.directory = directory;
+        this.library = library;
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.segmentBytes = segmentBytes;
+        this.writer = new Thread(this::runWriter, "catalog-journal");
+        this.writer.setDaemon(true);
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public static CatalogJournal open(Path directory, Library library, SyncPolicy syncPolicy) throws IOException {
+        return open(directory, library, syncPolicy, DEFAULT_SYNC_INTERVAL_MILLIS, DEFAULT_SEGMENT_BYTES);
+    }
+    
+    // Recovers the journal in the directory into the (empty) library, then logs
+    // every further change the library makes until the journal is closed
+    public static CatalogJournal open(Path directory, Library library, SyncPolicy syncPolicy,
+            long syncIntervalMillis, long segmentBytes) throws IOException {
+        if (library == null || syncPolicy == null) {
+            throw new IllegalArgumentException("Library and sync policy cannot be null");
+        }
+        if (syncIntervalMillis < 0 || segmentBytes <= 0) {
+            throw new IllegalArgumentException("Sync interval and segment size must be positive");
+        }
+        Files.createDirectories(directory);
+        CatalogJournal journal = new CatalogJournal(directory, library, syncPolicy, syncIntervalMillis, segmentBytes);
+        long lastSegment = recover(directory, library);
+        journal.openSegment(lastSegment + 1);
+        library.addCatalogListener(journal);
+        journal.writer.start();
+        return journal;
+    }
+    
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+    
+    public boolean isHealthy() {
+        return failure == null && !closed;
+    }
+    
+    // Rolls the log over and folds every closed segment into a fresh snapshot.
+    // Runs on the compactor thread; the returned future completes when done.
+    public CompletableFuture<Void> compact() {
+        if (closed) {
+            throw new IllegalStateException("Catalog journal is closed");
+        }
+        CompletableFuture<Long> rotated = new CompletableFuture<>();
+        enqueue(Entry.rotate(rotated));
+        return rotated.thenAcceptAsync(this::compactBefore, compactor);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        library.removeCatalogListener(this);
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+            compactor.shutdown();
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // A compact() racing with close may have queued its rollover too late
+        for (Entry entry; (entry = queue.poll()) != null; ) {
+            if (entry.rotated != null) {
+                entry.rotated.completeExceptionally(new IllegalStateException("Catalog journal is closed"));
+            }
+        }
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+        if (segment != null) {
+            segment.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    // CatalogListener: queue a record per change
+    @Override
+    public void bookAdded(Book book, int quantity) {
+        append(Entry.add(book, quantity));
+    }
+    
+    @Override
+    public void bookRemoved(Book book) {
+        append(Entry.remove(book));
+    }
+    
+    @Override
+    public void quantityChanged(Book book, int oldQuantity, int newQuantity) {
+        append(Entry.quantity(book, newQuantity - oldQuantity));
+    }
+    
+    @Override
+    public void priceChanged(Book book, double oldPrice, double newPrice) {
+        append(Entry.price(book, newPrice));
+    }
+    
+    private void append(Entry entry) {
+        if (closed || failure != null) {
+            return;
+        }
+        enqueue(entry);
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            library.afterChange(() -> awaitDurable(entry));
+        }
+    }
+    
+    // Wakes the writer only if it is parked, so a busy writer costs a queue offer
+    private void enqueue(Entry entry) {
+        queue.offer(entry);
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+    }
+    
+    private void awaitDurable(Entry entry) {
+        synchronized (durableMonitor) {
+            while (!entry.durable && failure == null && !closed) {
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    // Writer thread
+    private void runWriter() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        List<Entry> pendingSync = new ArrayList<>();
+        long lastSync = System.nanoTime();
+        boolean dirty = false;
+        try {
+            while (true) {
+                Entry entry = queue.poll();
+                if (entry == null) {
+                    write(buffer);
+                    if (dirty && syncDue(lastSync)) {
+                        segment.force(false);
+                        lastSync = System.nanoTime();
+                        dirty = false;
+                    }
+                    markDurable(pendingSync);
+                    if (closed && queue.isEmpty()) {
+                        break;
+                    }
+                    // Park until a change is queued, or until the pending sync
+                    // is due; idle is set before the queue is checked again, so
+                    // a change queued meanwhile either is seen or unparks us
+                    idle = true;
+                    if (queue.isEmpty() && !closed) {
+                        if (dirty && syncPolicy == SyncPolicy.INTERVAL) {
+                            LockSupport.parkNanos(this, syncIntervalNanos - (System.nanoTime() - lastSync));
+                        } else {
+                            LockSupport.park(this);
+                        }
+                    }
+                    idle = false;
+                    continue;
+                }
+                
+                if (entry.rotated != null) {
+                    write(buffer);
+                    segment.force(false);
+                    markDurable(pendingSync);
+                    dirty = false;
+                    entry.rotated.complete(rotate());
+                    continue;
+                }
+                
+                // A quantity or price change reaching us after its book was removed or
+                // replaced is superseded by that later record, so it is dropped
+                if ((entry.type == QUANTITY || entry.type == PRICE)
+                        && !library.holdsBook(entry.book)) {
+                    entry.durable = true;
+                    continue;
+                }
+                
+                encode(entry, buffer);
+                dirty = true;
+                if (syncPolicy == SyncPolicy.ALWAYS) {
+                    pendingSync.add(entry);
+                    if (pendingSync.size() >= MAX_PENDING_SYNC) {
+                        write(buffer);
+                        segment.force(false);
+                        lastSync = System.nanoTime();
+                        dirty = false;
+                        markDurable(pendingSync);
+                    }
+                }
+                
+                if (segmentSize + buffer.position() >= segmentBytes) {
+                    write(buffer);
+                    segment.force(false);
+                    markDurable(pendingSync);
+                    dirty = false;
+                    long sealed = rotate();
+                    compactor.execute(() -> compactBefore(sealed));
+                }
+            }
+            write(buffer);
+            segment.force(false);
+            markDurable(pendingSync);
+        } catch (IOException e) {
+            failure = e;
+            System.err.println("Error writing catalog journal: " + e.getMessage());
+        } catch (RuntimeException e) {
+            failure = new IOException("Catalog journal writer failed", e);
+            System.err.println("Error writing catalog journal: " + e);
+        } finally {
+            synchronized (durableMonitor) {
+                durableMonitor.notifyAll();
+            }
+        }
+    }
+    
+    private boolean syncDue(long lastSync) {
+        switch (syncPolicy) {
+            case ALWAYS:
+                return true;
+            case INTERVAL:
+                return System.nanoTime() - lastSync >= syncIntervalNanos;
+            default:
+                return false;
+        }
+    }
+    
+    private void markDurable(List<Entry> pendingSync) {
+        if (pendingSync.isEmpty()) {
+            return;
+        }
+        for (Entry entry : pendingSync) {
+            entry.durable = true;
+        }
+        pendingSync.clear();
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+    }
+    
+    private void encode(Entry entry, ByteBuffer buffer) throws IOException {
+        byte[] name = bytes(entry.name);
+        byte[] author = bytes(entry.author);
+        byte[] isbn = bytes(entry.isbn);
+        int payload = 1 + 8;
+        if (entry.type == ADD) {
+            payload += size(name) + size(author) + size(isbn) + 8 + 4;
+        } else if (entry.type == QUANTITY) {
+            payload += 4;
+        } else if (entry.type == PRICE) {
+            payload += 8;
+        }
+        int recordSize = 4 + payload + 4;
+        if (recordSize > buffer.remaining()) {
+            write(buffer);
+        }
+        ByteBuffer target = recordSize <= buffer.capacity() ? buffer : ByteBuffer.allocate(recordSize);
+        
+        target.putInt(payload);
+        int start = target.position();
+        target.put(entry.type);
+        target.putLong(entry.id);
+        if (entry.type == ADD) {
+            putBytes(target, name);
+            putBytes(target, author);
+            putBytes(target, isbn);
+            target.putDouble(entry.price);
+            target.putInt(entry.quantity);
+        } else if (entry.type == QUANTITY) {
+            target.putInt(entry.quantity);
+        } else if (entry.type == PRICE) {
+            target.putDouble(entry.price);
+        }
+        target.putInt(checksum(target, start, payload));
+        
+        if (target != buffer) {
+            write(target);
+        }
+    }
+    
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentSize += segment.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    private long rotate() throws IOException {
+        long sealed = segmentSequence;
+        segment.close();
+        openSegment(sealed + 1);
+        return segmentSequence;
+    }
+    
+    private void openSegment(long sequence) throws IOException {
+        Path path = directory.resolve(segmentName(sequence));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(JOURNAL_MAGIC).putInt(FORMAT_VERSION).flip();
+        while (header.hasRemaining()) {
+            segment.write(header);
+        }
+        segment.force(true);
+        segmentSequence = sequence;
+        segmentSize = header.capacity();
+    }
+    
+    // Compaction: snapshot-N holds the catalog as of the start of segment N
+    private void compactBefore(long firstLiveSegment) {
+        try {
+            Library scratch = new Library();
+            long covered = loadLatestSnapshot(directory, scratch);
+            List<Long> sealed = new ArrayList<>();
+            for (long sequence : listSequences(directory, "journal-", ".log")) {
+                if (sequence >= covered && sequence < firstLiveSegment) {
+                    replaySegment(directory.resolve(segmentName(sequence)), scratch, false);
+                    sealed.add(sequence);
+                }
+            }
+            if (sealed.isEmpty() && covered >= firstLiveSegment) {
+                return;
+            }
+            writeSnapshot(directory, firstLiveSegment, scratch);
+            for (long sequence : listSequences(directory, "journal-", ".log")) {
+                if (sequence < firstLiveSegment) {
+                    Files.deleteIfExists(directory.resolve(segmentName(sequence)));
+                }
+            }
+            for (long sequence : listSequences(directory, "snapshot-", ".bin")) {
+                if (sequence < firstLiveSegment) {
+                    Files.deleteIfExists(directory.resolve(snapshotName(sequence)));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error compacting catalog journal: " + e.getMessage());
+        }
+    }
+    
+    // Recovery
+    private static long recover(Path directory, Library library) throws IOException {
+        long covered = loadLatestSnapshot(directory, library);
+        List<Long> segments = listSequences(directory, "journal-", ".log");
+        long last = Math.max(0, covered - 1);
+        for (int i = 0; i < segments.size(); i++) {
+            long sequence = segments.get(i);
+            if (sequence >= covered) {
+                boolean tail = i == segments.size() - 1;
+                replaySegment(directory.resolve(segmentName(sequence)), library, tail);
+            }
+            last = Math.max(last, sequence);
+        }
+        return last;
+    }
+    
+    private static void replaySegment(Path path, Library library, boolean tail) throws IOException {
+        long validBytes = 0;
+        boolean torn = false;
+        try (InputStream file = Files.newInputStream(path);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            if (in.readInt() != JOURNAL_MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a catalog journal: " + path);
+            }
+            validBytes = 8;
+            byte[] record = new byte[256];
+            CRC32 crc = new CRC32();
+            while (true) {
+                int payload;
+                try {
+                    payload = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (payload <= 0 || payload > MAX_RECORD_BYTES) {
+                    torn = true;
+                    break;
+                }
+                if (record.length < payload) {
+                    record = new byte[payload];
+                }
+                int checksum;
+                try {
+                    in.readFully(record, 0, payload);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    torn = true;
+                    break;
+                }
+                crc.reset();
+                crc.update(record, 0, payload);
+                if ((int) crc.getValue() != checksum) {
+                    torn = true;
+                    break;
+                }
+                apply(ByteBuffer.wrap(record, 0, payload), library);
+                validBytes += 4 + payload + 4;
+            }
+        } catch (EOFException e) {
+            torn = true; // header cut short
+        }
+        if (torn) {
+            if (!tail) {
+                throw new IOException("Corrupt record in sealed journal segment " + path + " at byte " + validBytes);
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+    }
+    
+    private static void apply(ByteBuffer record, Library library) {
+        byte type = record.get();
+        long id = record.getLong();
+        switch (type) {
+            case ADD: {
+                String name = getString(record);
+                String author = getString(record);
+                String isbn = getString(record);
+                double price = record.getDouble();
+                int quantity = record.getInt();
+                library.restoreBook(id, new Book(name, author, price, isbn, quantity));
+                break;
+            }
+            case REMOVE:
+                library.removeBook(id);
+                break;
+            case QUANTITY: {
+                Book book = library.findBookById(id);
+                if (book != null) {
+                    // Deltas are logged in order, so this only goes below zero if
+                    // the log is wrong; the book is kept rather than the recovery lost
+                    int delta = record.getInt();
+                    int quantity = book.getQuantity() + delta;
+                    if (quantity < 0) {
+                        System.err.println("Journal takes book " + id + " below zero copies (" + book.getQuantity()
+                                + " " + delta + "); recovering it with none");
+                        quantity = 0;
+                    }
+                    book.setQuantity(quantity);
+                }
+                break;
+            }
+            case PRICE: {
+                Book book = library.findBookById(id);
+                if (book != null) {
+                    book.setBookPrice(record.getDouble());
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+    
+    // Snapshots
+    private static long loadLatestSnapshot(Path directory, Library library) throws IOException {
+        List<Long> snapshots = listSequences(directory, "snapshot-", ".bin");
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            long sequence = snapshots.get(i);
+            try {
+                SnapshotFile.read(directory.resolve(snapshotName(sequence)), library);
+                return sequence;
+            } catch (IOException e) {
+                System.err.println("Skipping unreadable snapshot " + snapshotName(sequence) + ": " + e.getMessage());
+                library.setBooks(null);
+            }
+        }
+        return 0;
+    }
+    
+    private static void writeSnapshot(Path directory, long sequence, Library library) throws IOException {
+        Path target = directory.resolve(snapshotName(sequence));
+        Path temp = directory.resolve(snapshotName(sequence) + ".tmp");
+        SnapshotFile.write(temp, library);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    // Helpers
+    private static List<Long> listSequences(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    sequences.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+    
+    static String segmentName(long sequence) {
+        return String.format("journal-%020d.log", sequence);
+    }
+    
+    static String snapshotName(long sequence) {
+        return String.format("snapshot-%020d.bin", sequence);
+    }
+    
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+    
+    // Strings are an int length (-1 for null) followed by UTF-8 bytes
+    private static int size(byte[] value) {
+        return 4 + (value != null ? value.length : 0);
+    }
+    
+    private static void putBytes(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+    
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+    
+    private static int checksum(ByteBuffer buffer, int start, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(start).limit(start + length);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+    
+    // One queued change; ADD records copy the book's fields when queued
+    private static final class Entry {
+        final byte type;
+        final long id;
+        final Book book;
+        String name;
+        String author;
+        String isbn;
+        double price;
+        int quantity;
+        CompletableFuture<Long> rotated;
+        volatile boolean durable;
+        
+        private Entry(byte type, Book book) {
+            this.type = type;
+            this.book = book;
+            this.id = book != null ? book.getId() : 0;
+        }
+        
+        static Entry add(Book book, int quantity) {
+            Entry entry = new Entry(ADD, book);
+            entry.name = book.getBookName();
+            entry.author = book.getBookAuthor();
+            entry.isbn = book.getIsbn();
+            entry.price = book.getBookPrice();
+            entry.quantity = quantity;
+            return entry;
+        }
+        
+        static Entry remove(Book book) {
+            return new Entry(REMOVE, book);
+        }
+        
+        static Entry quantity(Book book, int delta) {
+            Entry entry = new Entry(QUANTITY, book);
+            entry.quantity = delta;
+            return entry;
+        }
+        
+        static Entry price(Book book, double price) {
+            Entry entry = new Entry(PRICE, book);
+            entry.price = price;
+            return entry;
+        }
+        
+        static Entry rotate(CompletableFuture<Long> rotated) {
+            Entry entry = new Entry((byte) 0, null);
+            entry.rotated = rotated;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.jsp.lms.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.Isbn;
+import com.jsp.lms.model.Library;
+
+// Streams books from a CSV or TSV file into a Library.
+//
+// Each row is name, author, price[, isbn[, quantity]]; an optional header row
+// is skipped. Fields may be double-quoted, with "" for a literal quote, but a
+// row must fit on one line. Rows are read in chunks and handed to
+// Library.addBooks; with a parallelism above one, chunks are parsed on worker
+// threads while they are still applied in file order. Bad rows, including
+// ones whose ISBN does not parse or fails its check digit, are reported in the
+// ImportResult and skipped.
+//
+// Loads fall short of 1M rows/s on one core (see CatalogLoadBenchmark).
+// Parsing alone runs at about 2.8M rows/s; the rest goes to Library.addBooks,
+// which allocates a Book, its strings and its index entries per row, and to
+// the collections that copy the growing catalog, so a large young generation
+// (-Xmn) helps more than parallelism does.
+public class CatalogLoader {
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+    public static final int DEFAULT_MAX_REPORTED_ERRORS = 1000;
+    
+    private final Library library;
+    private char delimiter = ',';
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int parallelism = 1;
+    private int maxReportedErrors = DEFAULT_MAX_REPORTED_ERRORS;
+    
+    public CatalogLoader(Library library) {
+        if (library == null) {
+            throw new IllegalArgumentException("Library cannot be null");
+        }
+        this.library = library;
+    }
+    
+    // Getters and Setters with validation
+    public char getDelimiter() {
+        return delimiter;
+    }
+    
+    public void setDelimiter(char delimiter) {
+        if (delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Delimiter cannot be a quote or line break");
+        }
+        this.delimiter = delimiter;
+    }
+    
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize > 0) {
+            this.chunkSize = chunkSize;
+        } else {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+    }
+    
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    public void setParallelism(int parallelism) {
+        if (parallelism > 0) {
+            this.parallelism = parallelism;
+        } else {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+    }
+    
+    public int getMaxReportedErrors() {
+        return maxReportedErrors;
+    }
+    
+    public void setMaxReportedErrors(int maxReportedErrors) {
+        if (maxReportedErrors >= 0) {
+            this.maxReportedErrors = maxReportedErrors;
+        } else {
+            throw new IllegalArgumentException("Max reported errors cannot be negative");
+        }
+    }
+    
+    // .tsv and .tab files are tab-separated, .csv files comma-separated; any
+    // other extension uses the configured delimiter
+    public ImportResult load(Path file) throws IOException {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        char fileDelimiter = delimiter;
+        if (fileName.endsWith(".tsv") || fileName.endsWith(".tab")) {
+            fileDelimiter = '\t';
+        } else if (fileName.endsWith(".csv")) {
+            fileDelimiter = ',';
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader, fileDelimiter);
+        }
+    }
+    
+    public ImportResult load(Reader source) throws IOException {
+        return load(source, delimiter);
+    }
+    
+    private ImportResult load(Reader source, char delimiter) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader
+                ? (BufferedReader) source : new BufferedReader(source, 1 << 16);
+        ImportResult result = new ImportResult(maxReportedErrors);
+        ExecutorService workers = parallelism > 1 ? Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "catalog-loader");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        
+        try {
+            Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            long lineNumber = 0;
+            boolean firstLine = true;
+            List<String> lines = new ArrayList<>(chunkSize);
+            long chunkStart = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (firstLine) {
+                    firstLine = false;
+                    if (isHeader(line, delimiter)) {
+                        chunkStart = lineNumber + 1;
+                        continue;
+                    }
+                }
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    submit(lines, chunkStart, delimiter, workers, inFlight, result);
+                    lines = new ArrayList<>(chunkSize);
+                    chunkStart = lineNumber + 1;
+                }
+            }
+            if (!lines.isEmpty()) {
+                submit(lines, chunkStart, delimiter, workers, inFlight, result);
+            }
+            while (!inFlight.isEmpty()) {
+                apply(await(inFlight.removeFirst()), result);
+            }
+            return result;
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+        }
+    }
+    
+    private void submit(List<String> lines, long firstLineNumber, char delimiter, ExecutorService workers,
+            Deque<Future<Chunk>> inFlight, ImportResult result) throws IOException {
+        if (workers == null) {
+            apply(parse(lines, firstLineNumber, delimiter), result);
+            return;
+        }
+        // Bound the work queue so a large file is streamed rather than buffered
+        while (inFlight.size() >= parallelism * 2) {
+            apply(await(inFlight.removeFirst()), result);
+        }
+        inFlight.addLast(workers.submit(() -> parse(lines, firstLineNumber, delimiter)));
+    }
+    
+    private Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    private void apply(Chunk chunk, ImportResult result) {
+        result.addRows(chunk.rows);
+        result.addImported(library.addBooks(chunk.books));
+        for (ImportResult.RowError error : chunk.errors) {
+            result.addError(error);
+        }
+    }
+    
+    // Parsing
+    private Chunk parse(List<String> lines, long firstLineNumber, char delimiter) {
+        Chunk chunk = new Chunk(lines.size());
+        List<String> fields = new ArrayList<>(5);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            chunk.rows++;
+            long lineNumber = firstLineNumber + i;
+            try {
+                chunk.books.add(parseRow(line, delimiter, fields));
+            } catch (IllegalArgumentException e) {
+                chunk.errors.add(new ImportResult.RowError(lineNumber, e.getMessage()));
+            }
+        }
+        return chunk;
+    }
+    
+    private static Book parseRow(String line, char delimiter, List<String> fields) {
+        split(line, delimiter, fields);
+        if (fields.size() < 3 || fields.size() > 5) {
+            throw new IllegalArgumentException("Expected 3 to 5 fields but found " + fields.size());
+        }
+        
+        String name = fields.get(0).trim();
+        String author = fields.get(1).trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Book name cannot be empty");
+        }
+        if (author.isEmpty()) {
+            throw new IllegalArgumentException("Author name cannot be empty");
+        }
+        
+        double price = parsePrice(fields.get(2).trim());
+        String isbn = fields.size() > 3 ? fields.get(3).trim() : "";
+        if (!isbn.isEmpty() && Isbn.parse(isbn) == Isbn.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN: " + isbn);
+        }
+        int quantity = fields.size() > 4 ? parseQuantity(fields.get(4).trim()) : 1;
+        return new Book(name, author, price, isbn.isEmpty() ? null : isbn, quantity);
+    }
+    
+    private static double parsePrice(String field) {
+        try {
+            double price = Double.parseDouble(field);
+            if (price >= 0 && !Double.isInfinite(price)) {
+                return price;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid price: " + field);
+    }
+    
+    private static int parseQuantity(String field) {
+        if (field.isEmpty()) {
+            return 1;
+        }
+        try {
+            int quantity = Integer.parseInt(field);
+            if (quantity >= 0) {
+                return quantity;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid quantity: " + field);
+    }
+    
+    // Splits one row on the delimiter, honouring double-quoted fields
+    private static void split(String line, char delimiter, List<String> fields) {
+        fields.clear();
+        int length = line.length();
+        int i = 0;
+        while (true) {
+            if (i < length && line.charAt(i) == '"') {
+                StringBuilder field = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                fields.add(field.toString());
+                if (i < length && line.charAt(i) != delimiter) {
+                    throw new IllegalArgumentException("Unexpected character after quoted field");
+                }
+            } else {
+                int end = line.indexOf(delimiter, i);
+                if (end < 0) {
+                    end = length;
+                }
+                fields.add(line.substring(i, end));
+                i = end;
+            }
+            if (i >= length) {
+                return;
+            }
+            i++; // skip the delimiter
+        }
+    }
+    
+    private static boolean isHeader(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(5);
+        try {
+            split(line, delimiter, fields);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (fields.size() < 3) {
+            return false;
+        }
+        String first = fields.get(0).trim().toLowerCase(Locale.ROOT);
+        String price = fields.get(2).trim().toLowerCase(Locale.ROOT);
+        return (first.equals("name") || first.equals("title") || first.equals("bookname")
+                || first.equals("book name") || first.equals("book_name")) && price.contains("price");
+    }
+    
+    private static class Chunk {
+        final List<Book> books;
+        final List<ImportResult.RowError> errors = new ArrayList<>();
+        long rows;
+        
+        Chunk(int capacity) {
+            this.books = new ArrayList<>(capacity);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.jsp.lms.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ImportResult {
+    private long rowsRead;
+    private long booksImported;
+    private long errorCount;
+    private final List<RowError> errors = new ArrayList<>();
+    private final int maxReportedErrors;
+    
+    ImportResult(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+    
+    // Getters
+    public long getRowsRead() {
+        return rowsRead;
+    }
+    
+    public long getBooksImported() {
+        return booksImported;
+    }
+    
+    public long getErrorCount() {
+        return errorCount;
+    }
+    
+    // Only the first errors are kept; getErrorCount has the full count
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+    
+    // Accumulation, called by the loader as chunks complete
+    void addRows(long rows) {
+        rowsRead += rows;
+    }
+    
+    void addImported(long books) {
+        booksImported += books;
+    }
+    
+    void addError(RowError error) {
+        errorCount++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(error);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ImportResult [Rows: %d, Imported: %d, Errors: %d]",
+                rowsRead, booksImported, errorCount);
+    }
+    
+    public static class RowError {
+        private final long lineNumber;
+        private final String message;
+        
+        RowError(long lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+        
+        public long getLineNumber() {
+            return lineNumber;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+        
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.jsp.lms.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.Isbn;
+import com.jsp.lms.model.LazyCatalog;
+import com.jsp.lms.model.Library;
+
+// Binary catalog snapshot that a Library serves straight from a memory
+// mapping, see Library.loadLazily.
+//
+// The file is a fixed header with the catalog totals, one fixed-width record
+// per book in id order, a title index, an author index and an index of the
+// valid ISBNs, and a string pool holding names, authors (stored once each) and
+// ISBNs. The indexes are (hash, record) pairs sorted by the hash of the
+// normalized key, or of the Isbn.parse key, so a lookup is a binary search over
+// the mapping. Opening only reads the header; pages are faulted in as lookups
+// touch them and books are built on demand. Version 1 files have no ISBN
+// index, and an ISBN lookup in one scans the records.
+//
+// A file is limited to 2 GB, the most a single mapping can address.
+public class MappedCatalog implements LazyCatalog {
+    static final int MAGIC = 0x4C4D534D; // "LMSM"
+    static final int VERSION = 2;
+    
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 32;
+    private static final int INDEX_ENTRY_BYTES = 8;
+    private static final int NO_STRING = -1;
+    
+    // Record layout
+    private static final int ID = 0;
+    private static final int PRICE = 8;
+    private static final int QUANTITY = 16;
+    private static final int NAME = 20;
+    private static final int AUTHOR = 24;
+    private static final int ISBN = 28;
+    
+    private final ByteBuffer buffer;
+    private final int size;
+    private final long lastBookId;
+    private final long totalCopies;
+    private final long inventoryValueCents;
+    private final int availableTitles;
+    private final int titleIndexStart;
+    private final int authorIndexStart;
+    private final int isbnIndexStart;
+    private final int isbnEntries; // -1 in a version 1 file
+    private final int poolStart;
+    
+    private MappedCatalog(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a mapped catalog");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION && version != 1) {
+            throw new IOException("Unsupported mapped catalog version " + version);
+        }
+        this.size = buffer.getInt(8);
+        this.isbnEntries = version == 1 ? -1 : buffer.getInt(12);
+        this.lastBookId = buffer.getLong(16);
+        this.totalCopies = buffer.getLong(24);
+        this.inventoryValueCents = buffer.getLong(32);
+        this.availableTitles = buffer.getInt(40);
+        long poolOffset = buffer.getLong(48);
+        long poolLength = buffer.getLong(56);
+        
+        long titleIndex = HEADER_BYTES + (long) size * RECORD_BYTES;
+        long authorIndex = titleIndex + (long) size * INDEX_ENTRY_BYTES;
+        long isbnIndex = authorIndex + (long) size * INDEX_ENTRY_BYTES;
+        if (size < 0 || isbnEntries > size
+                || poolOffset != isbnIndex + (long) Math.max(isbnEntries, 0) * INDEX_ENTRY_BYTES
+                || poolLength < 0 || poolOffset + poolLength != buffer.capacity()) {
+            throw new IOException("Mapped catalog is truncated or corrupt");
+        }
+        this.titleIndexStart = (int) titleIndex;
+        this.authorIndexStart = (int) authorIndex;
+        this.isbnIndexStart = (int) isbnIndex;
+        this.poolStart = (int) poolOffset;
+    }
+    
+    // The mapping outlives the channel and is released once unreachable
+    public static MappedCatalog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Mapped catalog larger than 2 GB: " + path);
+            }
+            return new MappedCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+        }
+    }
+    
+    // Writes the library's books to the path, replacing it atomically
+    public static void write(Path path, Library library) throws IOException {
+        List<Book> books = library.getBooks();
+        int count = books.size();
+        long[] titleKeys = new long[count];
+        long[] authorKeys = new long[count];
+        long[] isbns = new long[count];
+        int isbnCount = 0;
+        for (int i = 0; i < count; i++) {
+            isbns[i] = Isbn.parse(books.get(i).getIsbn());
+            if (isbns[i] != Isbn.INVALID) {
+                isbnCount++;
+            }
+        }
+        long[] isbnKeys = new long[isbnCount];
+        long poolOffset = HEADER_BYTES + (long) count * (RECORD_BYTES + 2 * INDEX_ENTRY_BYTES)
+                + (long) isbnCount * INDEX_ENTRY_BYTES;
+        long totalCopies = 0;
+        long inventoryValueCents = 0;
+        int availableTitles = 0;
+        int isbnEntry = 0;
+        
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Section records = new Section(out, HEADER_BYTES);
+            Section pool = new Section(out, poolOffset);
+            Map<String, Integer> authors = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                Book book = books.get(i);
+                int quantity = book.getQuantity();
+                totalCopies += quantity;
+                inventoryValueCents += Math.round(book.getBookPrice() * 100) * quantity;
+                if (quantity > 0) {
+                    availableTitles++;
+                }
+                
+                int name = pool.putString(book.getBookName());
+                Integer author = authors.get(book.getBookAuthor());
+                if (author == null) {
+                    author = pool.putString(book.getBookAuthor());
+                    authors.put(book.getBookAuthor(), author);
+                }
+                int isbn = pool.putString(book.getIsbn());
+                
+                ByteBuffer record = records.reserve(RECORD_BYTES);
+                record.putLong(book.getId());
+                record.putDouble(book.getBookPrice());
+                record.putInt(quantity);
+                record.putInt(name);
+                record.putInt(author);
+                record.putInt(isbn);
+                
+                titleKeys[i] = indexKey(Library.normalizeTitle(book.getBookName()), i);
+                authorKeys[i] = indexKey(Library.normalizeAuthor(book.getBookAuthor()), i);
+                if (isbns[i] != Isbn.INVALID) {
+                    isbnKeys[isbnEntry++] = indexKey(Long.hashCode(isbns[i]), i);
+                }
+            }
+            records.flush();
+            long poolLength = pool.flush() - poolOffset;
+            if (poolOffset + poolLength > Integer.MAX_VALUE) {
+                throw new IOException("Catalog too large for a single mapping");
+            }
+            
+            writeIndex(out, HEADER_BYTES + (long) count * RECORD_BYTES, titleKeys);
+            writeIndex(out, HEADER_BYTES + (long) count * (RECORD_BYTES + INDEX_ENTRY_BYTES), authorKeys);
+            writeIndex(out, HEADER_BYTES + (long) count * (RECORD_BYTES + 2 * INDEX_ENTRY_BYTES), isbnKeys);
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(isbnCount);
+            header.putLong(library.getLastBookId());
+            header.putLong(totalCopies);
+            header.putLong(inventoryValueCents);
+            header.putInt(availableTitles).putInt(0);
+            header.putLong(poolOffset);
+            header.putLong(poolLength);
+            header.flip();
+            writeFully(out, header, 0);
+            out.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    // LazyCatalog
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public long lastBookId() {
+        return lastBookId;
+    }
+    
+    @Override
+    public long totalCopies() {
+        return totalCopies;
+    }
+    
+    @Override
+    public int availableTitles() {
+        return availableTitles;
+    }
+    
+    @Override
+    public long inventoryValueCents() {
+        return inventoryValueCents;
+    }
+    
+    @Override
+    public long idAt(int index) {
+        return buffer.getLong(record(index) + ID);
+    }
+    
+    @Override
+    public int indexOf(long bookId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long id = idAt(mid);
+            if (id < bookId) {
+                low = mid + 1;
+            } else if (id > bookId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public int findByTitle(String normalizedTitle) {
+        if (normalizedTitle == null) {
+            return -1;
+        }
+        int hash = normalizedTitle.hashCode();
+        for (int entry = firstEntry(titleIndexStart, size, hash); entry < size; entry++) {
+            int position = titleIndexStart + entry * INDEX_ENTRY_BYTES;
+            if (buffer.getInt(position) != hash) {
+                break;
+            }
+            int index = buffer.getInt(position + 4);
+            if (normalizedTitle.equals(Library.normalizeTitle(string(index, NAME)))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public int[] findByAuthor(String normalizedAuthor) {
+        if (normalizedAuthor == null) {
+            return new int[0];
+        }
+        int hash = normalizedAuthor.hashCode();
+        int[] matches = new int[4];
+        int count = 0;
+        for (int entry = firstEntry(authorIndexStart, size, hash); entry < size; entry++) {
+            int position = authorIndexStart + entry * INDEX_ENTRY_BYTES;
+            if (buffer.getInt(position) != hash) {
+                break;
+            }
+            int index = buffer.getInt(position + 4);
+            if (normalizedAuthor.equals(Library.normalizeAuthor(string(index, AUTHOR)))) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = index;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+    
+    @Override
+    public int[] findByIsbn(long isbn) {
+        int[] matches = new int[1];
+        int count = 0;
+        if (isbnEntries < 0) {
+            for (int index = 0; index < size; index++) {
+                if (Isbn.parse(string(index, ISBN)) == isbn) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    matches[count++] = index;
+                }
+            }
+            return Arrays.copyOf(matches, count);
+        }
+        int hash = Long.hashCode(isbn);
+        for (int entry = firstEntry(isbnIndexStart, isbnEntries, hash); entry < isbnEntries; entry++) {
+            int position = isbnIndexStart + entry * INDEX_ENTRY_BYTES;
+            if (buffer.getInt(position) != hash) {
+                break;
+            }
+            int index = buffer.getInt(position + 4);
+            if (Isbn.parse(string(index, ISBN)) == isbn) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = index;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+    
+    @Override
+    public Book load(int index) {
+        int record = record(index);
+        return new Book(string(index, NAME), string(index, AUTHOR), buffer.getDouble(record + PRICE),
+                string(index, ISBN), buffer.getInt(record + QUANTITY));
+    }
+    
+    // Reading helpers; only absolute reads, so the buffer is shared by all threads
+    private int record(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + size);
+        }
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+    
+    private String string(int index, int field) {
+        int offset = buffer.getInt(record(index) + field);
+        if (offset == NO_STRING) {
+            return null;
+        }
+        int position = poolStart + offset;
+        int length = buffer.getInt(position);
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // First index entry whose hash is not below the given one
+    private int firstEntry(int indexStart, int entries, int hash) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(indexStart + mid * INDEX_ENTRY_BYTES) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    // Writing helpers. An index key packs the hash above the record index, so
+    // sorting the keys orders entries by hash and then by id.
+    private static long indexKey(String normalizedKey, int index) {
+        return indexKey(normalizedKey != null ? normalizedKey.hashCode() : 0, index);
+    }
+    
+    private static long indexKey(int hash, int index) {
+        return ((long) hash << 32) | (index & 0xFFFFFFFFL);
+    }
+    
+    private static void writeIndex(FileChannel out, long position, long[] keys) throws IOException {
+        Arrays.sort(keys);
+        Section section = new Section(out, position);
+        for (long key : keys) {
+            section.reserve(INDEX_ENTRY_BYTES).putLong(key);
+        }
+        section.flush();
+    }
+    
+    private static void writeFully(FileChannel out, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += out.write(data, position);
+        }
+    }
+    
+    // Buffered sequential writer for one region of the file
+    private static final class Section {
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private final long start;
+        private long position;
+        
+        Section(FileChannel out, long start) {
+            this.out = out;
+            this.start = start;
+            this.position = start;
+        }
+        
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+        
+        // Appends a length-prefixed UTF-8 string and returns its offset in the section
+        int putString(String value) throws IOException {
+            if (value == null) {
+                return NO_STRING;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            long offset = position + buffer.position() - start;
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Catalog too large for a single mapping");
+            }
+            if (bytes.length + 4 > buffer.capacity()) {
+                flush();
+                ByteBuffer large = ByteBuffer.allocate(bytes.length + 4);
+                large.putInt(bytes.length).put(bytes).flip();
+                writeFully(out, large, position);
+                position += large.capacity();
+            } else {
+                reserve(bytes.length + 4).putInt(bytes.length).put(bytes);
+            }
+            return (int) offset;
+        }
+        
+        // Writes out what is buffered and returns the file position after it
+        long flush() throws IOException {
+            buffer.flip();
+            int length = buffer.remaining();
+            writeFully(out, buffer, position);
+            position += length;
+            buffer.clear();
+            return position;
+        }
+    }
+}
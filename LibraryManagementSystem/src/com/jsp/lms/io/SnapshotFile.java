@@ -0,0 +1,110 @@
+package com.jsp.lms.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.Library;
+
+// Whole-catalog snapshot used by CatalogJournal: a header, the last id handed
+// out, then every book with its id, followed by a CRC32 of everything before it.
+final class SnapshotFile {
+    private static final int MAX_STRING_BYTES = 16 << 20;
+    
+    private SnapshotFile() {
+    }
+    
+    static void write(Path path, Library library) throws IOException {
+        List<Book> books = library.getBooks();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream file = Channels.newOutputStream(channel);
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+            out.writeInt(CatalogJournal.SNAPSHOT_MAGIC);
+            out.writeInt(CatalogJournal.FORMAT_VERSION);
+            out.writeLong(library.getLastBookId());
+            out.writeInt(books.size());
+            for (Book book : books) {
+                out.writeLong(book.getId());
+                writeString(out, book.getBookName());
+                writeString(out, book.getBookAuthor());
+                writeString(out, book.getIsbn());
+                out.writeDouble(book.getBookPrice());
+                out.writeInt(book.getQuantity());
+            }
+            out.flush();
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+            channel.force(true);
+        }
+    }
+    
+    // Restores the snapshot into the library; a bad checksum leaves it partly filled
+    static void read(Path path, Library library) throws IOException {
+        try (InputStream file = Files.newInputStream(path)) {
+            // Checksum above the buffer, so it covers exactly the bytes consumed
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(
+                    new CheckedInputStream(new BufferedInputStream(file, 1 << 16), crc));
+            if (in.readInt() != CatalogJournal.SNAPSHOT_MAGIC || in.readInt() != CatalogJournal.FORMAT_VERSION) {
+                throw new IOException("Not a catalog snapshot: " + path);
+            }
+            long lastBookId = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                String name = readString(in);
+                String author = readString(in);
+                String isbn = readString(in);
+                double price = in.readDouble();
+                int quantity = in.readInt();
+                library.restoreBook(id, new Book(name, author, price, isbn, quantity));
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+            library.reserveBookIds(lastBookId);
+        }
+    }
+    
+    // Strings are an int length (-1 for null) followed by UTF-8 bytes
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING_BYTES) {
+            throw new IOException("Corrupt snapshot string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,213 @@
+package com.jsp.lms.model;
+
+import java.util.function.Supplier;
+
+// Bibliographic records shared by any number of compact libraries, such as
+// the branches of a LibraryNetwork. Each distinct combination of title,
+// author and ISBN is stored once and given a dense record id; a library built
+// on the pool keeps only record ids, prices, quantities and its own indexes,
+// so N branches cost the unique titles once plus N sets of primitive columns
+// instead of N copies of every string. Prices stay with the libraries, since
+// they change far more often than the rest of a record and may differ
+// between branches.
+//
+// Titles, authors and ISBNs are dictionary encoded, so a record is a row of
+// string ids, and a string shared by many records (an author's name, or a
+// title held in several editions) is stored once. Dictionary ids stay valid
+// for the pool's life.
+//
+// Records never change: changing a book's details moves that one book to
+// another record, leaving every other branch's copy as it was. Each record
+// counts the slots holding it, and one no longer held by any is reused by the
+// next new record. Adding and releasing records is synchronized; reading one
+// takes no lock, since column pages never move once written, a library only
+// learns a record id after the record has been written, and a record is only
+// reused once no library holds it.
+public final class BibliographicPool {
+    private final StringDictionary names;
+    private final StringDictionary authors;
+    private final StringDictionary isbns;
+    private final Columns.IntColumn nameIds; // name dictionary ids
+    private final Columns.IntColumn authorIds; // author dictionary ids
+    private final Columns.IntColumn isbnIds; // ISBN dictionary ids
+    private final Columns.IntColumn hashes; // hash of the whole record
+    private final Columns.IntColumn holders; // slots holding each record, 0 once freed
+    private final Columns.IntColumn freeRecords; // freed records, reused last in first out
+    private final SlotIndex index; // record -> record id, for deduplication
+    private int records; // record ids handed out, freed ones included
+    private int freeCount;
+    private volatile int size;
+    
+    // Default constructor: records on the heap
+    public BibliographicPool() {
+        this(false);
+    }
+    
+    // An off-heap pool keeps its records in direct memory, as OffHeapLibrary does
+    public BibliographicPool(boolean offHeap) {
+        this(offHeap ? Columns::directInts : Columns::heapInts,
+                offHeap ? Columns.directBytes() : Columns.heapBytes());
+    }
+    
+    BibliographicPool(Supplier<Columns.IntColumn> ints, Columns.ByteColumn bytes) {
+        StringPool strings = new StringPool(bytes);
+        this.names = new StringDictionary(strings, ints, Library::normalizeTitle);
+        this.authors = new StringDictionary(strings, ints, Library::normalizeAuthor);
+        this.isbns = new StringDictionary(strings, ints, null);
+        this.nameIds = ints.get();
+        this.authorIds = ints.get();
+        this.isbnIds = ints.get();
+        this.hashes = ints.get();
+        this.holders = ints.get();
+        this.freeRecords = ints.get();
+        this.index = new SlotIndex(new RecordKeys(), ints);
+    }
+    
+    // Number of distinct records held by some library
+    public int size() {
+        return size;
+    }
+    
+    // Id of the record for one more holder, adding it on first sight
+    synchronized int intern(String name, String author, String isbn) {
+        int nameId = names.intern(name);
+        int authorId = authors.intern(author);
+        int isbnId = isbns.intern(isbn);
+        int hash = hash(nameId, authorId, isbnId);
+        int record = index.find(hash, candidate -> nameIds.get(candidate) == nameId
+                && authorIds.get(candidate) == authorId
+                && isbnIds.get(candidate) == isbnId);
+        if (record >= 0) {
+            holders.set(record, holders.get(record) + 1);
+            return record;
+        }
+        if (freeCount == 0 && records == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Bibliographic pool is full");
+        }
+        
+        record = freeCount > 0 ? freeRecords.get(--freeCount) : records++;
+        nameIds.set(record, nameId);
+        authorIds.set(record, authorId);
+        isbnIds.set(record, isbnId);
+        hashes.set(record, hash);
+        holders.set(record, 1);
+        index.add(record);
+        size++;
+        return record;
+    }
+    
+    // Lets go of one holder of the record, freeing it after the last
+    synchronized void release(int record) {
+        int remaining = holders.get(record) - 1;
+        holders.set(record, remaining);
+        if (remaining == 0) {
+            index.remove(record);
+            freeRecords.set(freeCount++, record);
+            size--;
+        }
+    }
+    
+    // The record with one field changed, taken in place of the given one
+    synchronized int withName(int record, String name) {
+        return replace(record, intern(name, author(record), isbn(record)));
+    }
+    
+    synchronized int withAuthor(int record, String author) {
+        return replace(record, intern(name(record), author, isbn(record)));
+    }
+    
+    synchronized int withIsbn(int record, String isbn) {
+        return replace(record, intern(name(record), author(record), isbn));
+    }
+    
+    private int replace(int record, int replacement) {
+        release(record);
+        return replacement;
+    }
+    
+    // Fields
+    String name(int record) {
+        return names.get(nameIds.get(record));
+    }
+    
+    String author(int record) {
+        return authors.get(authorIds.get(record));
+    }
+    
+    String isbn(int record) {
+        return isbns.get(isbnIds.get(record));
+    }
+    
+    // Strings by dictionary id. The ids of a record's strings outlive the
+    // record, so a book that has left its library keeps them instead.
+    int nameId(int record) {
+        return nameIds.get(record);
+    }
+    
+    int authorId(int record) {
+        return authorIds.get(record);
+    }
+    
+    int isbnId(int record) {
+        return isbnIds.get(record);
+    }
+    
+    String nameOf(int nameId) {
+        return names.get(nameId);
+    }
+    
+    String authorName(int authorId) {
+        return authors.get(authorId);
+    }
+    
+    String isbnOf(int isbnId) {
+        return isbns.get(isbnId);
+    }
+    
+    synchronized int internName(String name) {
+        return names.intern(name);
+    }
+    
+    synchronized int internAuthor(String author) {
+        return authors.intern(author);
+    }
+    
+    synchronized int internIsbn(String isbn) {
+        return isbns.intern(isbn);
+    }
+    
+    // Index keys, for the title and author indexes of the libraries
+    int titleHash(int record) {
+        return names.keyHash(nameIds.get(record));
+    }
+    
+    boolean matchesTitle(int record, String key) {
+        return names.matchesKey(nameIds.get(record), key);
+    }
+    
+    int authorHash(int record) {
+        return authors.keyHash(authorIds.get(record));
+    }
+    
+    boolean matchesAuthor(int record, String key) {
+        return authors.matchesKey(authorIds.get(record), key);
+    }
+    
+    private static int hash(int nameId, int authorId, int isbnId) {
+        return 31 * (31 * nameId + authorId) + isbnId;
+    }
+    
+    // Records are found through SlotIndex.find(int, IntPredicate), so only the
+    // hash is needed here
+    private final class RecordKeys implements SlotIndex.Keys {
+        @Override
+        public int hash(int record) {
+            return hashes.get(record);
+        }
+        
+        @Override
+        public boolean matches(int record, String key) {
+            throw new UnsupportedOperationException("Records are not keyed by a string");
+        }
+    }
+}
@@ -5,9 +5,11 @@ import java.util.Objects;
 public class Book {
     private String bookName;
     private String bookAuthor;
-    private double bookPrice;
+    private volatile double bookPrice;
     private String isbn;
-    private int quantity;
+    private volatile int quantity; // written under the book's monitor
+    private volatile Library library; // library whose running totals track this book
+    private long id; // assigned by the library that holds this book
     
     // Default constructor
     public Book() {
@@ -38,7 +40,10 @@ public class Book {
     
     public void setBookName(String bookName) {
         if (bookName != null && !bookName.trim().isEmpty()) {
-            this.bookName = bookName.trim();
+            Library owner = library;
+            if (owner == null || !owner.titleChanged(this, bookName.trim())) {
+                this.bookName = bookName.trim();
+            }
         } else {
             throw new IllegalArgumentException("Book name cannot be null or empty");
         }
@@ -50,7 +55,10 @@ public class Book {
     
     public void setBookAuthor(String bookAuthor) {
         if (bookAuthor != null && !bookAuthor.trim().isEmpty()) {
-            this.bookAuthor = bookAuthor.trim();
+            Library owner = library;
+            if (owner == null || !owner.authorChanged(this, bookAuthor.trim())) {
+                this.bookAuthor = bookAuthor.trim();
+            }
         } else {
             throw new IllegalArgumentException("Author name cannot be null or empty");
         }
@@ -62,7 +70,21 @@ public class Book {
     
     public void setBookPrice(double bookPrice) {
         if (bookPrice >= 0) {
-            this.bookPrice = bookPrice;
+            Library owner;
+            synchronized (this) {
+                double oldPrice = this.bookPrice;
+                this.bookPrice = bookPrice;
+                owner = library;
+                if (owner != null) {
+                    owner.priceChanged(this, oldPrice, bookPrice);
+                }
+            }
+            if (owner != null) {
+                if (owner.hasIndexes()) {
+                    owner.indexRepriced(this); // takes the library lock, so not under the monitor
+                }
+                owner.runDeferred();
+            }
         } else {
             throw new IllegalArgumentException("Book price cannot be negative");
         }
@@ -72,8 +94,17 @@ public class Book {
         return isbn;
     }
     
+    // A blank ISBN clears it; anything else must be a valid ISBN-10 or ISBN-13
     public void setIsbn(String isbn) {
-        this.isbn = isbn;
+        String value = validIsbn(isbn);
+        Library owner = library;
+        if (owner == null || !owner.isbnChanged(this, value)) {
+            this.isbn = value;
+        }
+    }
+    
+    public long getId() {
+        return id;
     }
     
     public int getQuantity() {
@@ -82,7 +113,7 @@ public class Book {
     
     public void setQuantity(int quantity) {
         if (quantity >= 0) {
-            this.quantity = quantity;
+            updateQuantity(quantity, true);
         } else {
             throw new IllegalArgumentException("Quantity cannot be negative");
         }
@@ -90,19 +121,86 @@ public class Book {
     
     // Business methods
     public boolean isAvailable() {
-        return quantity > 0;
+        return getQuantity() > 0;
     }
     
     public void incrementQuantity() {
-        this.quantity++;
+        updateQuantity(1, false);
     }
     
     public boolean decrementQuantity() {
-        if (quantity > 0) {
-            quantity--;
-            return true;
+        return updateQuantity(-1, false);
+    }
+    
+    // Quantity update; a change that would go below zero fails. Quantity and
+    // price changes hold the book's monitor while the library adds them to its
+    // running totals, so each one is counted at the other's current value.
+    private boolean updateQuantity(int value, boolean absolute) {
+        Library owner;
+        synchronized (this) {
+            int oldQuantity = quantity;
+            int newQuantity = absolute ? value : oldQuantity + value;
+            if (newQuantity < 0) {
+                return false;
+            }
+            quantity = newQuantity;
+            owner = library;
+            if (owner != null) {
+                owner.quantityChanged(this, oldQuantity, newQuantity);
+            }
+        }
+        if (owner != null) {
+            owner.runDeferred(); // listeners' waits, now that the monitor is free
+        }
+        return true;
+    }
+    
+    // Library bookkeeping
+    //
+    // The library attaches and releases the book holding its monitor, so a
+    // borrow or return racing with the removal either lands before it (and is
+    // reported to the library) or after it (and is not), never both.
+    Library getLibrary() {
+        return library;
+    }
+    
+    void setId(long id) {
+        this.id = id;
+    }
+    
+    // Changes done by the library, which keeps its indexes in step
+    void assignBookName(String bookName) {
+        this.bookName = bookName;
+    }
+    
+    void assignBookAuthor(String bookAuthor) {
+        this.bookAuthor = bookAuthor;
+    }
+    
+    void assignIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+    
+    // Starts reporting to the given library and returns the quantity it takes over
+    int attach(Library library) {
+        this.library = library;
+        return quantity;
+    }
+    
+    // Stops reporting to the current library and returns the quantity it gives up
+    int release() {
+        library = null;
+        return quantity;
+    }
+    
+    static String validIsbn(String isbn) {
+        if (isbn == null || isbn.trim().isEmpty()) {
+            return null;
+        }
+        if (!Isbn.isValid(isbn)) {
+            throw new IllegalArgumentException("ISBN must be a valid ISBN-10 or ISBN-13");
         }
-        return false;
+        return isbn.trim();
     }
     
     // Override methods
@@ -111,19 +209,19 @@ public class Book {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Book book = (Book) obj;
-        return Objects.equals(bookName, book.bookName) && 
-               Objects.equals(bookAuthor, book.bookAuthor);
+        return Objects.equals(getBookName(), book.getBookName()) && 
+               Objects.equals(getBookAuthor(), book.getBookAuthor());
     }
     
     @Override
     public int hashCode() {
-        return Objects.hash(bookName, bookAuthor);
+        return Objects.hash(getBookName(), getBookAuthor());
     }
     
     @Override
     public String toString() {
         return String.format("Book [Name: %s, Author: %s, Price: $%.2f, ISBN: %s, Quantity: %d, Available: %s]",
-                bookName, bookAuthor, bookPrice, isbn != null ? isbn : "N/A", 
-                quantity, isAvailable() ? "Yes" : "No");
+                getBookName(), getBookAuthor(), getBookPrice(), getIsbn() != null ? getIsbn() : "N/A", 
+                getQuantity(), isAvailable() ? "Yes" : "No");
     }
 }
@@ -0,0 +1,159 @@
+package com.jsp.lms.model;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Direct-address table from library-assigned book ids to books. Ids are handed
+// out sequentially, so a paged array is the id-keyed map: lookups are two array
+// reads with no hashing or boxing. Writers are serialized by the library lock;
+// readers need no lock because pages and slots are published atomically.
+//
+// Each page also carries one availability bit per slot, so the in-stock titles
+// can be listed in catalog order by scanning the bits of occupied pages.
+final class BookTable {
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    
+    private volatile AtomicReferenceArray<Page> pages;
+    private volatile int size;
+    
+    BookTable() {
+        this(PAGE_SIZE);
+    }
+    
+    BookTable(int expectedIds) {
+        int pageCount = Math.max(1, (expectedIds >>> PAGE_SHIFT) + 1);
+        this.pages = new AtomicReferenceArray<>(pageCount);
+    }
+    
+    Book get(long id) {
+        Page page = page(id);
+        return page != null ? page.slots.get((int) (id & PAGE_MASK)) : null;
+    }
+    
+    void put(long id, Book book) {
+        if (id <= 0 || id >>> PAGE_SHIFT >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Book id out of range: " + id);
+        }
+        int index = (int) (id >>> PAGE_SHIFT);
+        AtomicReferenceArray<Page> current = pages;
+        if (index >= current.length()) {
+            current = grow(current, index + 1);
+        }
+        Page page = current.get(index);
+        if (page == null) {
+            page = new Page();
+            current.set(index, page);
+        }
+        if (page.slots.getAndSet((int) (id & PAGE_MASK), book) == null) {
+            size++;
+        }
+    }
+    
+    Book remove(long id) {
+        Page page = page(id);
+        if (page == null) {
+            return null;
+        }
+        Book removed = page.slots.getAndSet((int) (id & PAGE_MASK), null);
+        if (removed != null) {
+            size--;
+        }
+        return removed;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    // Grows the page directory up front so a bulk load does not resize it repeatedly
+    void ensureCapacity(long maxId) {
+        long pageCount = (maxId >>> PAGE_SHIFT) + 1;
+        AtomicReferenceArray<Page> current = pages;
+        if (pageCount > current.length() && pageCount < Integer.MAX_VALUE) {
+            grow(current, (int) pageCount);
+        }
+    }
+    
+    // Availability bits; safe to flip from any thread
+    void setAvailable(long id, boolean available) {
+        Page page = page(id);
+        if (page == null) {
+            return;
+        }
+        int slot = (int) (id & PAGE_MASK);
+        long mask = 1L << slot;
+        while (true) {
+            long word = page.available.get(slot >>> 6);
+            long updated = available ? word | mask : word & ~mask;
+            if (word == updated || page.available.compareAndSet(slot >>> 6, word, updated)) {
+                return;
+            }
+        }
+    }
+    
+    // Appends every book in id order, which is the order books entered the catalog
+    void copyTo(List<Book> target) {
+        AtomicReferenceArray<Page> current = pages;
+        for (int index = 0; index < current.length(); index++) {
+            Page page = current.get(index);
+            if (page == null) {
+                continue;
+            }
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                Book book = page.slots.get(slot);
+                if (book != null) {
+                    target.add(book);
+                }
+            }
+        }
+    }
+    
+    // Same as copyTo, restricted to slots whose availability bit is set
+    void copyAvailableTo(List<Book> target) {
+        AtomicReferenceArray<Page> current = pages;
+        for (int index = 0; index < current.length(); index++) {
+            Page page = current.get(index);
+            if (page == null) {
+                continue;
+            }
+            for (int w = 0; w < PAGE_SIZE / 64; w++) {
+                long word = page.available.get(w);
+                while (word != 0) {
+                    int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    Book book = page.slots.get(slot);
+                    if (book != null && book.isAvailable()) {
+                        target.add(book);
+                    }
+                }
+            }
+        }
+    }
+    
+    private Page page(long id) {
+        if (id <= 0) {
+            return null;
+        }
+        long index = id >>> PAGE_SHIFT;
+        AtomicReferenceArray<Page> current = pages;
+        return index < current.length() ? current.get((int) index) : null;
+    }
+    
+    private AtomicReferenceArray<Page> grow(AtomicReferenceArray<Page> current, int minPages) {
+        int length = Math.max(minPages, current.length() * 2);
+        AtomicReferenceArray<Page> grown = new AtomicReferenceArray<>(length);
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        pages = grown;
+        return grown;
+    }
+    
+    private static final class Page {
+        final AtomicReferenceArray<Book> slots = new AtomicReferenceArray<>(PAGE_SIZE);
+        final AtomicLongArray available = new AtomicLongArray(PAGE_SIZE / 64);
+    }
+}
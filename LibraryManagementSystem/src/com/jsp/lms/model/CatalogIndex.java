@@ -0,0 +1,29 @@
+package com.jsp.lms.model;
+
+import java.util.Collection;
+
+// Secondary index a Library builds on first use and then keeps in step with
+// its catalog. Unlike a CatalogListener it also sees books hydrated from a
+// lazy catalog, and it is only called with the library's write lock held, so
+// implementations need no locking of their own as long as queries take the
+// read lock. Entries should be keyed by book id: CompactLibrary hands out a
+// new view object for every call.
+interface CatalogIndex {
+    void add(Book book);
+    
+    // Called with the book's values as they were when it was added, except
+    // for changes made to a tracked Book behind the library's back
+    void remove(Book book);
+    
+    // Called after a book's price changed in place; indexes not keyed by
+    // price ignore it
+    default void repriced(Book book) {
+    }
+    
+    // Fills a new index with the current catalog
+    default void addAll(Collection<Book> books) {
+        for (Book book : books) {
+            add(book);
+        }
+    }
+}
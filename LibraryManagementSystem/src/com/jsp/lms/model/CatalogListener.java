@@ -0,0 +1,23 @@
+package com.jsp.lms.model;
+
+// Receives every change a Library makes to its catalog. Callbacks run on the
+// thread making the change; borrow and return in thread-safe mode call them
+// concurrently, so implementations must be thread-safe. A book's changes are
+// reported in the order they were made: quantity and price callbacks run while
+// the change still holds the book (its monitor, or its CompactLibrary stripe
+// under the read lock), so they must not block on the library themselves.
+public interface CatalogListener {
+    // A book now held by the library under book.getId(), starting at the given quantity
+    default void bookAdded(Book book, int quantity) {
+    }
+    
+    // A book no longer held; updateBook reports a removal followed by an add under the same id
+    default void bookRemoved(Book book) {
+    }
+    
+    default void quantityChanged(Book book, int oldQuantity, int newQuantity) {
+    }
+    
+    default void priceChanged(Book book, double oldPrice, double newPrice) {
+    }
+}
@@ -0,0 +1,153 @@
+package com.jsp.lms.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// A report over a whole catalog, computed by Library.computeStatistics in one
+// pass. Prices are per title; the inventory value counts every copy.
+public class CatalogStatistics {
+    // Lower bounds of the price histogram buckets; the last one is open-ended
+    static final double[] PRICE_BUCKETS = {0, 5, 10, 20, 50, 100, 200, 500, 1000};
+    // Quantity distribution: titles with 0 to 9 copies, then 10 or more
+    static final int QUANTITY_BUCKETS = 11;
+    
+    private final long titles;
+    private final long copies;
+    private final long stockOutTitles;
+    private final double inventoryValue;
+    private final double minPrice;
+    private final double maxPrice;
+    private final double averagePrice;
+    private final long[] priceHistogram;
+    private final long[] quantityDistribution;
+    private final List<AuthorStatistics> authors;
+    
+    CatalogStatistics(StatisticsAccumulator totals, Collection<AuthorStatistics> authors) {
+        this.titles = totals.titles;
+        this.copies = totals.copies;
+        this.stockOutTitles = totals.stockOuts;
+        this.inventoryValue = totals.valueCents / 100.0;
+        this.minPrice = totals.titles > 0 ? totals.minPrice : 0;
+        this.maxPrice = totals.titles > 0 ? totals.maxPrice : 0;
+        this.averagePrice = totals.titles > 0 ? totals.priceSum / totals.titles : 0;
+        this.priceHistogram = totals.priceHistogram.clone();
+        this.quantityDistribution = totals.quantityHistogram.clone();
+        List<AuthorStatistics> sorted = new ArrayList<>(authors);
+        sorted.sort(Comparator.comparingLong(AuthorStatistics::getTitles).reversed()
+                .thenComparing(Comparator.comparingLong(AuthorStatistics::getCopies).reversed())
+                .thenComparing(AuthorStatistics::getName));
+        this.authors = Collections.unmodifiableList(sorted);
+    }
+    
+    // Getters
+    public long getTitles() {
+        return titles;
+    }
+    
+    public long getCopies() {
+        return copies;
+    }
+    
+    public long getAvailableTitles() {
+        return titles - stockOutTitles;
+    }
+    
+    // Titles with no copy on the shelf
+    public long getStockOutTitles() {
+        return stockOutTitles;
+    }
+    
+    public double getStockOutRatio() {
+        return titles > 0 ? (double) stockOutTitles / titles : 0;
+    }
+    
+    public double getInventoryValue() {
+        return inventoryValue;
+    }
+    
+    public double getMinPrice() {
+        return minPrice;
+    }
+    
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+    
+    public double getAveragePrice() {
+        return averagePrice;
+    }
+    
+    // Lower bound of each price bucket, in the order of getPriceHistogram
+    public double[] getPriceBucketBounds() {
+        return PRICE_BUCKETS.clone();
+    }
+    
+    // Titles per price bucket
+    public long[] getPriceHistogram() {
+        return priceHistogram.clone();
+    }
+    
+    // Titles with 0, 1, ... copies on the shelf; the last entry counts every
+    // title with that many copies or more
+    public long[] getQuantityDistribution() {
+        return quantityDistribution.clone();
+    }
+    
+    // Every author, most titles first
+    public List<AuthorStatistics> getAuthors() {
+        return authors;
+    }
+    
+    public List<AuthorStatistics> getTopAuthors(int limit) {
+        return authors.subList(0, Math.max(0, Math.min(limit, authors.size())));
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("CatalogStatistics [Titles: %d, Copies: %d, Stock-outs: %d, Value: $%.2f, Authors: %d]",
+                titles, copies, stockOutTitles, inventoryValue, authors.size());
+    }
+    
+    static int priceBucket(double price) {
+        int bucket = PRICE_BUCKETS.length - 1;
+        while (bucket > 0 && price < PRICE_BUCKETS[bucket]) {
+            bucket--;
+        }
+        return bucket;
+    }
+    
+    public static class AuthorStatistics {
+        private final String name;
+        private long titles;
+        private long copies;
+        
+        AuthorStatistics(String name) {
+            this.name = name;
+        }
+        
+        void add(long titles, long copies) {
+            this.titles += titles;
+            this.copies += copies;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public long getTitles() {
+            return titles;
+        }
+        
+        public long getCopies() {
+            return copies;
+        }
+        
+        @Override
+        public String toString() {
+            return name + ": " + titles + " titles, " + copies + " copies";
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.jsp.lms.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Paged primitive columns for CompactLibrary, on the heap or off it. A column
+// grows a page at a time and never moves a page once allocated, so growing it
+// does not copy the data and a value written to a slot stays put. Pages are
+// allocated densely: every index below the highest one written can be read.
+// Writers that add slots are serialized by the library lock; concurrent
+// writes to existing slots are serialized by the caller.
+final class Columns {
+    static final int PAGE_SHIFT = 14;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+    
+    private Columns() {
+    }
+    
+    static int grownLength(int length, int minLength) {
+        return Math.max(minLength, Math.max(4, length * 2));
+    }
+    
+    abstract static class IntColumn {
+        abstract int get(int index);
+        
+        abstract void set(int index, int value);
+    }
+    
+    abstract static class LongColumn {
+        abstract long get(int index);
+        
+        abstract void set(int index, long value);
+    }
+    
+    abstract static class DoubleColumn {
+        abstract double get(int index);
+        
+        abstract void set(int index, double value);
+    }
+    
+    // Byte storage addressed by a long offset; values may straddle pages
+    abstract static class ByteColumn {
+        abstract byte get(long offset);
+        
+        abstract void set(long offset, byte value);
+        
+        void get(long offset, byte[] target) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] = get(offset + i);
+            }
+        }
+        
+        void set(long offset, byte[] source) {
+            for (int i = 0; i < source.length; i++) {
+                set(offset + i, source[i]);
+            }
+        }
+    }
+    
+    // On-heap columns: one primitive array per page
+    static IntColumn heapInts() {
+        return new HeapInts();
+    }
+    
+    static LongColumn heapLongs() {
+        return new HeapLongs();
+    }
+    
+    static DoubleColumn heapDoubles() {
+        return new HeapDoubles();
+    }
+    
+    static ByteColumn heapBytes() {
+        return new HeapBytes();
+    }
+    
+    // Off-heap columns: one direct buffer per page, so the data is outside the
+    // garbage-collected heap and only the page directories live on it
+    static IntColumn directInts() {
+        return new DirectInts();
+    }
+    
+    static LongColumn directLongs() {
+        return new DirectLongs();
+    }
+    
+    static DoubleColumn directDoubles() {
+        return new DirectDoubles();
+    }
+    
+    static ByteColumn directBytes() {
+        return new DirectBytes();
+    }
+    
+    private static final class HeapInts extends IntColumn {
+        private volatile int[][] pages = new int[0][];
+        
+        @Override
+        int get(int index) {
+            return pages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+        }
+        
+        @Override
+        void set(int index, int value) {
+            int page = index >>> PAGE_SHIFT;
+            int[][] current = pages;
+            if (page >= current.length || current[page] == null) {
+                current = grow(page);
+            }
+            current[page][index & PAGE_MASK] = value;
+        }
+        
+        private int[][] grow(int page) {
+            int[][] current = pages;
+            if (page >= current.length) {
+                current = Arrays.copyOf(current, grownLength(current.length, page + 1));
+            }
+            for (int i = 0; i <= page; i++) {
+                if (current[i] == null) {
+                    current[i] = new int[PAGE_SIZE];
+                }
+            }
+            pages = current;
+            return current;
+        }
+    }
+    
+    private static final class HeapLongs extends LongColumn {
+        private volatile long[][] pages = new long[0][];
+        
+        @Override
+        long get(int index) {
+            return pages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+        }
+        
+        @Override
+        void set(int index, long value) {
+            int page = index >>> PAGE_SHIFT;
+            long[][] current = pages;
+            if (page >= current.length || current[page] == null) {
+                current = grow(page);
+            }
+            current[page][index & PAGE_MASK] = value;
+        }
+        
+        private long[][] grow(int page) {
+            long[][] current = pages;
+            if (page >= current.length) {
+                current = Arrays.copyOf(current, grownLength(current.length, page + 1));
+            }
+            for (int i = 0; i <= page; i++) {
+                if (current[i] == null) {
+                    current[i] = new long[PAGE_SIZE];
+                }
+            }
+            pages = current;
+            return current;
+        }
+    }
+    
+    private static final class HeapDoubles extends DoubleColumn {
+        private volatile double[][] pages = new double[0][];
+        
+        @Override
+        double get(int index) {
+            return pages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+        }
+        
+        @Override
+        void set(int index, double value) {
+            int page = index >>> PAGE_SHIFT;
+            double[][] current = pages;
+            if (page >= current.length || current[page] == null) {
+                current = grow(page);
+            }
+            current[page][index & PAGE_MASK] = value;
+        }
+        
+        private double[][] grow(int page) {
+            double[][] current = pages;
+            if (page >= current.length) {
+                current = Arrays.copyOf(current, grownLength(current.length, page + 1));
+            }
+            for (int i = 0; i <= page; i++) {
+                if (current[i] == null) {
+                    current[i] = new double[PAGE_SIZE];
+                }
+            }
+            pages = current;
+            return current;
+        }
+    }
+    
+    private static final class HeapBytes extends ByteColumn {
+        private static final int BYTE_PAGE_SHIFT = 20;
+        private static final int BYTE_PAGE_SIZE = 1 << BYTE_PAGE_SHIFT;
+        private static final int BYTE_PAGE_MASK = BYTE_PAGE_SIZE - 1;
+        
+        private volatile byte[][] pages = new byte[0][];
+        
+        @Override
+        byte get(long offset) {
+            return pages[(int) (offset >>> BYTE_PAGE_SHIFT)][(int) (offset & BYTE_PAGE_MASK)];
+        }
+        
+        @Override
+        void set(long offset, byte value) {
+            page(offset)[(int) (offset & BYTE_PAGE_MASK)] = value;
+        }
+        
+        @Override
+        void get(long offset, byte[] target) {
+            int done = 0;
+            while (done < target.length) {
+                long position = offset + done;
+                int start = (int) (position & BYTE_PAGE_MASK);
+                int length = Math.min(target.length - done, BYTE_PAGE_SIZE - start);
+                System.arraycopy(pages[(int) (position >>> BYTE_PAGE_SHIFT)], start, target, done, length);
+                done += length;
+            }
+        }
+        
+        @Override
+        void set(long offset, byte[] source) {
+            int done = 0;
+            while (done < source.length) {
+                long position = offset + done;
+                int start = (int) (position & BYTE_PAGE_MASK);
+                int length = Math.min(source.length - done, BYTE_PAGE_SIZE - start);
+                System.arraycopy(source, done, page(position), start, length);
+                done += length;
+            }
+        }
+        
+        private byte[] page(long offset) {
+            int page = (int) (offset >>> BYTE_PAGE_SHIFT);
+            byte[][] current = pages;
+            if (page >= current.length || current[page] == null) {
+                if (page >= current.length) {
+                    current = Arrays.copyOf(current, grownLength(current.length, page + 1));
+                }
+                for (int i = 0; i <= page; i++) {
+                    if (current[i] == null) {
+                        current[i] = new byte[BYTE_PAGE_SIZE];
+                    }
+                }
+                pages = current;
+            }
+            return current[page];
+        }
+    }
+    
+    // Page directory for the direct columns
+    private static final class DirectPages {
+        private final int pageBytes;
+        private volatile ByteBuffer[] pages = new ByteBuffer[0];
+        
+        DirectPages(int pageBytes) {
+            this.pageBytes = pageBytes;
+        }
+        
+        ByteBuffer get(int page) {
+            return pages[page];
+        }
+        
+        ByteBuffer page(int page) {
+            ByteBuffer[] current = pages;
+            if (page >= current.length || current[page] == null) {
+                if (page >= current.length) {
+                    current = Arrays.copyOf(current, grownLength(current.length, page + 1));
+                }
+                for (int i = 0; i <= page; i++) {
+                    if (current[i] == null) {
+                        current[i] = ByteBuffer.allocateDirect(pageBytes).order(ByteOrder.nativeOrder());
+                    }
+                }
+                pages = current;
+            }
+            return current[page];
+        }
+    }
+    
+    private static final class DirectInts extends IntColumn {
+        private final DirectPages pages = new DirectPages(PAGE_SIZE * Integer.BYTES);
+        
+        @Override
+        int get(int index) {
+            return pages.get(index >>> PAGE_SHIFT).getInt((index & PAGE_MASK) * Integer.BYTES);
+        }
+        
+        @Override
+        void set(int index, int value) {
+            pages.page(index >>> PAGE_SHIFT).putInt((index & PAGE_MASK) * Integer.BYTES, value);
+        }
+    }
+    
+    private static final class DirectLongs extends LongColumn {
+        private final DirectPages pages = new DirectPages(PAGE_SIZE * Long.BYTES);
+        
+        @Override
+        long get(int index) {
+            return pages.get(index >>> PAGE_SHIFT).getLong((index & PAGE_MASK) * Long.BYTES);
+        }
+        
+        @Override
+        void set(int index, long value) {
+            pages.page(index >>> PAGE_SHIFT).putLong((index & PAGE_MASK) * Long.BYTES, value);
+        }
+    }
+    
+    private static final class DirectDoubles extends DoubleColumn {
+        private final DirectPages pages = new DirectPages(PAGE_SIZE * Double.BYTES);
+        
+        @Override
+        double get(int index) {
+            return pages.get(index >>> PAGE_SHIFT).getDouble((index & PAGE_MASK) * Double.BYTES);
+        }
+        
+        @Override
+        void set(int index, double value) {
+            pages.page(index >>> PAGE_SHIFT).putDouble((index & PAGE_MASK) * Double.BYTES, value);
+        }
+    }
+    
+    private static final class DirectBytes extends ByteColumn {
+        private static final int BYTE_PAGE_SHIFT = 20;
+        private static final int BYTE_PAGE_SIZE = 1 << BYTE_PAGE_SHIFT;
+        private static final int BYTE_PAGE_MASK = BYTE_PAGE_SIZE - 1;
+        
+        private final DirectPages pages = new DirectPages(BYTE_PAGE_SIZE);
+        
+        @Override
+        byte get(long offset) {
+            return pages.get((int) (offset >>> BYTE_PAGE_SHIFT)).get((int) (offset & BYTE_PAGE_MASK));
+        }
+        
+        @Override
+        void set(long offset, byte value) {
+            pages.page((int) (offset >>> BYTE_PAGE_SHIFT)).put((int) (offset & BYTE_PAGE_MASK), value);
+        }
+        
+        @Override
+        void get(long offset, byte[] target) {
+            int done = 0;
+            while (done < target.length) {
+                long position = offset + done;
+                int start = (int) (position & BYTE_PAGE_MASK);
+                int length = Math.min(target.length - done, BYTE_PAGE_SIZE - start);
+                ByteBuffer page = pages.get((int) (position >>> BYTE_PAGE_SHIFT)).duplicate();
+                page.position(start);
+                page.get(target, done, length);
+                done += length;
+            }
+        }
+        
+        @Override
+        void set(long offset, byte[] source) {
+            int done = 0;
+            while (done < source.length) {
+                long position = offset + done;
+                int start = (int) (position & BYTE_PAGE_MASK);
+                int length = Math.min(source.length - done, BYTE_PAGE_SIZE - start);
+                ByteBuffer page = pages.page((int) (position >>> BYTE_PAGE_SHIFT)).duplicate();
+                page.position(start);
+                page.put(source, done, length);
+                done += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,1075 @@
+package com.jsp.lms.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+// Library engine for very large catalogs. Instead of one Book object (plus its
+// strings and map entries) per title, every field lives in a primitive column
+// indexed by slot: quantities and prices in columns of their own, and the
+// title, author and ISBN as the id of a record in a BibliographicPool, which
+// stores each distinct record and each distinct string once, in one UTF-8
+// pool. The title and author indexes are open-addressing tables of slots
+// rather than HashMaps, each pointing at the first of a list of the slots
+// sharing its key.
+//
+// A library has a pool of its own unless it is given one. Branches given the
+// same pool share every record they have in common, so a title stocked by
+// many branches is stored once and each branch adds only its int columns.
+//
+// Books handed out by lookups are lightweight views over a slot: reading one
+// reads the columns, and its setters write through to them. The books passed
+// to addBook, addBooks, setBooks, restoreBook and updateBook are copied into
+// the columns; they get their id as usual but are not tracked afterwards.
+//
+// A removed book's slot is reused by the next book added, and an update
+// refills the slot of the book it replaces. Each filling starts a new
+// generation of the slot, and a view of an earlier one keeps the values it
+// last read: reading it returns them, and changing it no longer affects the
+// library, just as with a book the default engine has let go of.
+public class CompactLibrary extends Library {
+    private static final int STRIPES = 64; // power of two
+    
+    // Per-slot columns
+    private final Columns.LongColumn ids;
+    private final Columns.IntColumn quantities;
+    private final Columns.DoubleColumn prices;
+    private final Columns.IntColumn records; // record ids in the pool
+    private final Columns.IntColumn titleNext; // circular list of a title's slots
+    private final Columns.IntColumn titlePrev;
+    private final Columns.IntColumn authorNext; // circular list of an author's slots
+    private final Columns.IntColumn authorPrev;
+    private final Columns.IntColumn idToSlot; // book id -> slot + 1, 0 when the id is free
+    private final Columns.IntColumn generations; // bumped each time a slot is filled
+    private final Columns.IntColumn freeSlots; // removed slots, reused last in first out
+    private final BibliographicPool pool;
+    private final SlotIndex titleIndex; // normalized title -> first slot of its list
+    private final SlotIndex authorIndex; // normalized author -> first slot of its list
+    private int slots;
+    private int freeCount;
+    private volatile long maxId; // highest id mapped, written after its mapping
+    private volatile int liveTitles;
+    
+    // Running totals, as in Library
+    private final LongAdder totalCopies = new LongAdder();
+    private final LongAdder availableTitles = new LongAdder();
+    private final LongAdder inventoryValueCents = new LongAdder();
+    
+    // Quantity changes only need the read lock, so concurrent changes to the
+    // same slot are serialized on one of these
+    private final Object[] stripes = new Object[STRIPES];
+    
+    // Default constructor
+    public CompactLibrary() {
+        this(false);
+    }
+    
+    public CompactLibrary(boolean threadSafe) {
+        this(null, threadSafe);
+    }
+    
+    // A library whose records are kept in the given pool, or in one of its own
+    // if the pool is null
+    public CompactLibrary(BibliographicPool pool, boolean threadSafe) {
+        super(threadSafe);
+        this.pool = pool != null ? pool : new BibliographicPool(this::newInts, newBytes());
+        this.ids = newLongs();
+        this.quantities = newInts();
+        this.prices = newDoubles();
+        this.records = newInts();
+        this.titleNext = newInts();
+        this.titlePrev = newInts();
+        this.authorNext = newInts();
+        this.authorPrev = newInts();
+        this.idToSlot = newInts();
+        this.generations = newInts();
+        this.freeSlots = newInts();
+        this.titleIndex = new SlotIndex(new TitleKeys(), this::newInts);
+        this.authorIndex = new SlotIndex(new AuthorKeys(), this::newInts);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+    
+    // Parameterized constructor
+    public CompactLibrary(String libraryName, String libraryAddress, int pincode) {
+        this(libraryName, libraryAddress, pincode, false);
+    }
+    
+    public CompactLibrary(String libraryName, String libraryAddress, int pincode, boolean threadSafe) {
+        this(libraryName, libraryAddress, pincode, null, threadSafe);
+    }
+    
+    public CompactLibrary(String libraryName, String libraryAddress, int pincode, BibliographicPool pool,
+            boolean threadSafe) {
+        this(pool, threadSafe);
+        setLibraryName(libraryName);
+        setLibraryAddress(libraryAddress);
+        setPincode(pincode);
+    }
+    
+    // Column storage, on the heap by default
+    Columns.IntColumn newInts() {
+        return Columns.heapInts();
+    }
+    
+    Columns.LongColumn newLongs() {
+        return Columns.heapLongs();
+    }
+    
+    Columns.DoubleColumn newDoubles() {
+        return Columns.heapDoubles();
+    }
+    
+    Columns.ByteColumn newBytes() {
+        return Columns.heapBytes();
+    }
+    
+    // The pool holding this library's records
+    public BibliographicPool getBibliographicPool() {
+        return pool;
+    }
+    
+    @Override
+    public List<Book> getBooks() {
+        return listSlots(false);
+    }
+    
+    @Override
+    public void setBooks(List<Book> books) {
+        lock.writeLock().lock();
+        try {
+            for (int slot = 0; slot < slots; slot++) {
+                if (isLive(slot)) {
+                    removeSlot(slot);
+                }
+            }
+            // Refill from the first slot, so the new books are listed in slot order
+            freeCount = 0;
+            for (int slot = slots - 1; slot >= 0; slot--) {
+                freeSlots.set(freeCount++, slot);
+            }
+            if (books != null) {
+                for (Book book : books) {
+                    append(book, nextId.incrementAndGet(), true);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Business methods
+    @Override
+    public boolean addBook(Book book) {
+        if (book == null) {
+            return false;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            insert(book);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int addBooks(Iterable<Book> newBooks) {
+        if (newBooks == null) {
+            return 0;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            if (newBooks instanceof Collection) {
+                titleIndex.ensureCapacity(titleIndex.size() + ((Collection<?>) newBooks).size());
+            }
+            int accepted = 0;
+            for (Book book : newBooks) {
+                if (book != null) {
+                    insert(book);
+                    accepted++;
+                }
+            }
+            return accepted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void restoreBook(long bookId, Book book) {
+        if (bookId <= 0 || book == null) {
+            throw new IllegalArgumentException("Restored book needs a positive id");
+        }
+        
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(bookId);
+            if (slot >= 0) {
+                removeSlot(slot);
+            }
+            append(book, bookId, true);
+            reserveBookIds(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // The columns are already compact, so the catalog is imported up front
+    // rather than served lazily
+    @Override
+    public void loadLazily(LazyCatalog catalog) {
+        if (catalog == null) {
+            throw new IllegalArgumentException("Catalog cannot be null");
+        }
+        
+        lock.writeLock().lock();
+        try {
+            if (liveTitles > 0) {
+                throw new IllegalStateException("A catalog can only be loaded into an empty library");
+            }
+            titleIndex.ensureCapacity(catalog.size());
+            for (int index = 0; index < catalog.size(); index++) {
+                append(catalog.load(index), catalog.idAt(index), false);
+            }
+            reserveBookIds(catalog.lastBookId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean removeBook(String bookName) {
+        lock.writeLock().lock();
+        try {
+            int slot = titleSlot(bookName);
+            if (slot < 0) {
+                return false;
+            }
+            removeSlot(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean removeBook(long bookId) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(bookId);
+            if (slot < 0) {
+                return false;
+            }
+            removeSlot(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public Book findBookByName(String bookName) {
+        lock.readLock().lock();
+        try {
+            int slot = titleSlot(bookName);
+            return slot >= 0 ? new SlotBook(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public Book findBookById(long bookId) {
+        lock.readLock().lock();
+        try {
+            int slot = slotOf(bookId);
+            return slot >= 0 ? new SlotBook(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Lock-free, as in Library, since listeners may call it while a writer
+    // holds the lock and waits on them
+    @Override
+    public boolean holdsBook(Book book) {
+        return book instanceof SlotBook && ((SlotBook) book).owner() == this && ((SlotBook) book).holdsSlot();
+    }
+    
+    @Override
+    public List<Book> findBooksByAuthor(String authorName) {
+        String key = normalizeAuthor(authorName);
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        
+        lock.readLock().lock();
+        try {
+            int head = authorIndex.find(key, key.hashCode());
+            if (head < 0) {
+                return Collections.emptyList();
+            }
+            List<Book> postings = new ArrayList<>();
+            int slot = head;
+            do {
+                postings.add(new SlotBook(slot));
+                slot = authorNext.get(slot);
+            } while (slot != head);
+            return Collections.unmodifiableList(postings);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<Book> getAvailableBooks() {
+        return listSlots(true);
+    }
+    
+    // Walks the slots rather than the id space, skipping the removed ones still
+    // waiting to be reused. Slots fill in id order until one is reused, so the
+    // listing only needs sorting by id after that.
+    private List<Book> listSlots(boolean availableOnly) {
+        lock.readLock().lock();
+        try {
+            List<Book> books = new ArrayList<>(availableOnly ? getAvailableTitleCount() : liveTitles);
+            long lastId = 0;
+            boolean inIdOrder = true;
+            for (int slot = 0; slot < slots; slot++) {
+                if (isLive(slot) && (!availableOnly || quantities.get(slot) > 0)) {
+                    Book book = new SlotBook(slot);
+                    inIdOrder &= book.getId() > lastId;
+                    lastId = book.getId();
+                    books.add(book);
+                }
+            }
+            if (!inIdOrder) {
+                books.sort(Comparator.comparingLong(Book::getId));
+            }
+            return books;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    long copyBooks(long fromId, boolean availableOnly, List<Book> target) {
+        lock.readLock().lock();
+        try {
+            long id = fromId;
+            for (; id <= maxId && target.size() < LISTING_PAGE; id++) {
+                int slot = slotOf(id);
+                if (slot >= 0 && (!availableOnly || quantities.get(slot) > 0)) {
+                    target.add(new SlotBook(slot));
+                }
+            }
+            return id <= maxId ? id : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public int getTotalBooks() {
+        return liveTitles;
+    }
+    
+    @Override
+    public int getTotalBookCopies() {
+        return (int) totalCopies.sum();
+    }
+    
+    @Override
+    public int getAvailableTitleCount() {
+        return (int) availableTitles.sum();
+    }
+    
+    @Override
+    public double getTotalInventoryValue() {
+        return inventoryValueCents.sum() / 100.0;
+    }
+    
+    // The statistics pass runs over the slots, reading the columns directly
+    @Override
+    long statisticsRows() {
+        return slots;
+    }
+    
+    @Override
+    void accumulateRow(StatisticsAccumulator totals, long row) {
+        int slot = (int) row;
+        if (isLive(slot)) {
+            int quantity = quantities.get(slot);
+            totals.add(prices.get(slot), quantity);
+            totals.addAuthor(pool.authorId(records.get(slot)), quantity);
+        }
+    }
+    
+    @Override
+    String authorName(long authorId) {
+        return pool.authorName((int) authorId);
+    }
+    
+    // Matches the existing book by id, or else by title, comparing name and
+    // author since the caller's copy is not the instance the library holds
+    @Override
+    public boolean updateBook(Book existingBook, Book updatedBook) {
+        if (existingBook == null || updatedBook == null) {
+            return false;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(existingBook.getId());
+            if (slot < 0 || !sameBook(slot, existingBook)) {
+                slot = titleSlot(existingBook.getBookName());
+                if (slot < 0 || !sameBook(slot, existingBook)) {
+                    return false;
+                }
+            }
+            return replaceSlot(slot, updatedBook);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean updateBook(long bookId, Book updatedBook) {
+        if (updatedBook == null) {
+            return false;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(bookId);
+            return slot >= 0 && replaceSlot(slot, updatedBook);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Borrow and return look the slot up and change its quantity column under
+    // one hold of the read lock, so the slot cannot be refilled in between;
+    // neither allocates unless a listener is registered or a return has a loan
+    // to close
+    @Override
+    public boolean borrowBook(String bookName) {
+        lock.readLock().lock();
+        try {
+            return borrowSlot(titleSlot(bookName));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean returnBook(String bookName) {
+        long bookId;
+        lock.readLock().lock();
+        try {
+            bookId = returnSlot(titleSlot(bookName));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return closeReturn(bookId);
+    }
+    
+    @Override
+    public boolean borrowBook(long bookId) {
+        lock.readLock().lock();
+        try {
+            return borrowSlot(slotOf(bookId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean returnBook(long bookId) {
+        long returnedId;
+        lock.readLock().lock();
+        try {
+            returnedId = returnSlot(slotOf(bookId));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return closeReturn(returnedId);
+    }
+    
+    // Every ISBN change goes through changeIsbn, so the index is exact here. It
+    // is fetched before the read lock is taken, since building it needs the
+    // write lock.
+    @Override
+    public Book findByIsbn(String isbn) {
+        IsbnIndex index = isbnIndexFor(isbn);
+        lock.readLock().lock();
+        try {
+            int slot = isbnSlot(index, isbn);
+            return slot >= 0 ? new SlotBook(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean borrowByIsbn(String isbn) {
+        IsbnIndex index = isbnIndexFor(isbn);
+        lock.readLock().lock();
+        try {
+            return borrowSlot(isbnSlot(index, isbn));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean returnByIsbn(String isbn) {
+        IsbnIndex index = isbnIndexFor(isbn);
+        long bookId;
+        lock.readLock().lock();
+        try {
+            bookId = returnSlot(isbnSlot(index, isbn));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return closeReturn(bookId);
+    }
+    
+    private boolean borrowSlot(int slot) {
+        return slot >= 0 && updateQuantity(slot, -1, false);
+    }
+    
+    // The id of the book returned to the slot, or 0 if there is none
+    private long returnSlot(int slot) {
+        return slot >= 0 && updateQuantity(slot, 1, false) ? ids.get(slot) : 0;
+    }
+    
+    private boolean closeReturn(long bookId) {
+        if (bookId == 0) {
+            return false;
+        }
+        copyReturned(bookId);
+        return true;
+    }
+    
+    // Structural helpers, called with the write lock held
+    private void insert(Book book) {
+        // Same merge rule as Library: the same ISBN, or else the same title
+        // unless both books have ISBNs
+        int existing = titleSlot(book.getBookName());
+        long isbn = Isbn.parse(book.getIsbn());
+        if (isbn != Isbn.INVALID) {
+            int sameIsbn = slotOf(isbnIndex().find(isbn));
+            if (sameIsbn >= 0) {
+                existing = sameIsbn;
+            } else if (existing >= 0 && Isbn.isValid(pool.isbn(records.get(existing)))) {
+                existing = -1;
+            }
+        }
+        if (existing >= 0) {
+            updateQuantity(existing, 1, false);
+            return;
+        }
+        append(book, nextId.incrementAndGet(), true);
+    }
+    
+    // Copies the book under the given id into the slot freed last, or else a
+    // new one. A book sharing its title with others is listed after them, and
+    // the title index keeps pointing at the first.
+    private void append(Book book, long id, boolean notify) {
+        if (id > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Book id " + id + " is out of range for a compact library");
+        }
+        if (freeCount == 0 && slots == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Compact library is full");
+        }
+        String name = book.getBookName();
+        double price = book.getBookPrice();
+        int quantity = book.getQuantity();
+        
+        int slot = freeCount > 0 ? freeSlots.get(--freeCount) : slots;
+        ids.set(slot, id);
+        quantities.set(slot, quantity);
+        prices.set(slot, price);
+        records.set(slot, pool.intern(name, book.getBookAuthor(), book.getIsbn()));
+        generations.set(slot, slot < slots ? generations.get(slot) + 1 : 0);
+        slots = Math.max(slots, slot + 1);
+        if (!(book instanceof SlotBook)) {
+            book.setId(id);
+        }
+        
+        idToSlot.set((int) id, slot + 1);
+        maxId = Math.max(maxId, id);
+        liveTitles++;
+        totalCopies.add(quantity);
+        inventoryValueCents.add(toCents(price) * quantity);
+        if (quantity > 0) {
+            availableTitles.increment();
+        }
+        linkTitle(slot);
+        linkAuthor(slot);
+        if (hasIndexes()) {
+            indexAdded(new SlotBook(slot));
+        }
+        if (notify && hasCatalogListeners()) {
+            fireBookAdded(new SlotBook(slot), quantity);
+        }
+    }
+    
+    private void removeSlot(int slot) {
+        if (hasIndexes()) {
+            indexRemoved(new SlotBook(slot));
+        }
+        unlinkTitle(slot);
+        unlinkAuthor(slot);
+        idToSlot.set((int) ids.get(slot), 0);
+        
+        int quantity = quantities.get(slot);
+        liveTitles--;
+        totalCopies.add(-quantity);
+        inventoryValueCents.add(-toCents(prices.get(slot)) * quantity);
+        if (quantity > 0) {
+            availableTitles.decrement();
+        }
+        if (hasCatalogListeners()) {
+            fireBookRemoved(new SlotBook(slot));
+        }
+        pool.release(records.get(slot));
+        freeSlots.set(freeCount++, slot);
+    }
+    
+    private boolean replaceSlot(int slot, Book updatedBook) {
+        // Refuse a rename onto a different book's title; editions already
+        // sharing a title can still be updated
+        String key = normalizeTitle(updatedBook.getBookName());
+        int clash = titleSlot(updatedBook.getBookName());
+        if (clash >= 0 && clash != slot && !key.equals(titleKey(slot))) {
+            return false;
+        }
+        
+        // The freed slot is the next one filled, so the book keeps its slot as
+        // well as the id and catalog position of the book it replaces
+        long id = ids.get(slot);
+        removeSlot(slot);
+        append(updatedBook, id, true);
+        return true;
+    }
+    
+    // Changes to the record of a view's slot, in place, moving the slot between
+    // index entries. A view that no longer holds its slot only changes its own
+    // copy of the fields.
+    private void rename(SlotBook book, String name) {
+        if (!book.holdsSlot()) {
+            book.nameId = pool.internName(name);
+            return;
+        }
+        int slot = book.slot;
+        if (hasIndexes()) {
+            indexRemoved(new SlotBook(slot));
+        }
+        unlinkTitle(slot);
+        records.set(slot, pool.withName(records.get(slot), name));
+        linkTitle(slot);
+        if (hasIndexes()) {
+            indexAdded(new SlotBook(slot));
+        }
+        fireBookReplaced(new SlotBook(slot));
+    }
+    
+    private void changeAuthor(SlotBook book, String author) {
+        if (!book.holdsSlot()) {
+            book.authorId = pool.internAuthor(author);
+            return;
+        }
+        int slot = book.slot;
+        if (hasIndexes()) {
+            indexRemoved(new SlotBook(slot));
+        }
+        unlinkAuthor(slot);
+        records.set(slot, pool.withAuthor(records.get(slot), author));
+        linkAuthor(slot);
+        if (hasIndexes()) {
+            indexAdded(new SlotBook(slot));
+        }
+        fireBookReplaced(new SlotBook(slot));
+    }
+    
+    private void changeIsbn(SlotBook book, String isbn) {
+        if (!book.holdsSlot()) {
+            book.isbnId = pool.internIsbn(isbn);
+            return;
+        }
+        int slot = book.slot;
+        if (hasIndexes()) {
+            indexRemoved(new SlotBook(slot));
+        }
+        records.set(slot, pool.withIsbn(records.get(slot), isbn));
+        if (hasIndexes()) {
+            indexAdded(new SlotBook(slot));
+        }
+        fireBookReplaced(new SlotBook(slot));
+    }
+    
+    // Title and author lists are circular and doubly linked through the slots,
+    // in the order the books were added; the index points at the first one
+    private void linkTitle(int slot) {
+        link(titleIndex, titleNext, titlePrev, titleKey(slot), slot);
+    }
+    
+    private void unlinkTitle(int slot) {
+        unlink(titleIndex, titleNext, titlePrev, titleKey(slot), slot);
+    }
+    
+    private void linkAuthor(int slot) {
+        link(authorIndex, authorNext, authorPrev, authorKey(slot), slot);
+    }
+    
+    private void unlinkAuthor(int slot) {
+        unlink(authorIndex, authorNext, authorPrev, authorKey(slot), slot);
+    }
+    
+    private static void link(SlotIndex index, Columns.IntColumn next, Columns.IntColumn prev, String key,
+            int slot) {
+        int head = key != null ? index.find(key, key.hashCode()) : -1;
+        if (head < 0) {
+            next.set(slot, slot);
+            prev.set(slot, slot);
+            if (key != null) {
+                index.add(slot);
+            }
+            return;
+        }
+        int tail = prev.get(head);
+        next.set(tail, slot);
+        prev.set(slot, tail);
+        next.set(slot, head);
+        prev.set(head, slot);
+    }
+    
+    private static void unlink(SlotIndex index, Columns.IntColumn next, Columns.IntColumn prev, String key,
+            int slot) {
+        if (key == null) {
+            return;
+        }
+        int following = next.get(slot);
+        if (following == slot) {
+            index.remove(slot);
+            return;
+        }
+        int preceding = prev.get(slot);
+        next.set(preceding, following);
+        prev.set(following, preceding);
+        next.set(slot, slot);
+        prev.set(slot, slot);
+        if (index.find(key, key.hashCode()) == slot) {
+            index.replace(slot, following);
+        }
+    }
+    
+    // Slot helpers
+    private IsbnIndex isbnIndexFor(String isbn) {
+        return Isbn.parse(isbn) != Isbn.INVALID ? isbnIndex() : null;
+    }
+    
+    private int isbnSlot(IsbnIndex index, String isbn) {
+        return index != null ? slotOf(index.find(Isbn.parse(isbn))) : -1;
+    }
+    
+    private int titleSlot(String bookName) {
+        String key = normalizeTitle(bookName);
+        return key != null ? titleIndex.find(key, key.hashCode()) : -1;
+    }
+    
+    private int slotOf(long bookId) {
+        return bookId > 0 && bookId <= maxId ? idToSlot.get((int) bookId) - 1 : -1;
+    }
+    
+    private boolean isLive(int slot) {
+        return slotOf(ids.get(slot)) == slot;
+    }
+    
+    private String titleKey(int slot) {
+        return normalizeTitle(pool.name(records.get(slot)));
+    }
+    
+    private String authorKey(int slot) {
+        return normalizeAuthor(pool.author(records.get(slot)));
+    }
+    
+    private boolean sameBook(int slot, Book book) {
+        int record = records.get(slot);
+        return Objects.equals(pool.name(record), book.getBookName())
+                && Objects.equals(pool.author(record), book.getBookAuthor());
+    }
+    
+    // Quantity and price changes of a live slot, made under the read lock and
+    // the slot's stripe; updateQuantity's caller holds the read lock. Neither
+    // touches the slot's record. Listeners are told before the stripe is let
+    // go, so they see each slot's changes in the order made.
+    private boolean updateQuantity(int slot, int value, boolean absolute) {
+        synchronized (stripes[slot & (STRIPES - 1)]) {
+            int oldQuantity = quantities.get(slot);
+            int newQuantity = absolute ? value : oldQuantity + value;
+            if (newQuantity < 0) {
+                return false;
+            }
+            quantities.set(slot, newQuantity);
+            totalCopies.add(newQuantity - oldQuantity);
+            inventoryValueCents.add(toCents(prices.get(slot)) * (newQuantity - oldQuantity));
+            if (oldQuantity == 0 && newQuantity > 0) {
+                availableTitles.increment();
+            } else if (oldQuantity > 0 && newQuantity == 0) {
+                availableTitles.decrement();
+            }
+            if (hasCatalogListeners()) {
+                fireQuantityChanged(new SlotBook(slot), oldQuantity, newQuantity);
+            }
+            return true;
+        }
+    }
+    
+    private void updatePrice(SlotBook book, double price) {
+        int slot = book.slot;
+        lock.readLock().lock();
+        try {
+            synchronized (stripes[slot & (STRIPES - 1)]) {
+                if (!book.holdsSlot()) {
+                    book.price = price;
+                    return;
+                }
+                double oldPrice = prices.get(slot);
+                prices.set(slot, price);
+                inventoryValueCents.add((toCents(price) - toCents(oldPrice)) * quantities.get(slot));
+                if (hasCatalogListeners()) {
+                    firePriceChanged(new SlotBook(slot), oldPrice, price);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        
+        if (hasIndexes()) {
+            indexRepriced(book);
+        }
+    }
+    
+    // Index keys: entries are slots, hashed by the column holding the key's hash
+    private final class TitleKeys implements SlotIndex.Keys {
+        @Override
+        public int hash(int slot) {
+            return pool.titleHash(records.get(slot));
+        }
+        
+        @Override
+        public boolean matches(int slot, String key) {
+            return pool.matchesTitle(records.get(slot), key);
+        }
+    }
+    
+    private final class AuthorKeys implements SlotIndex.Keys {
+        @Override
+        public int hash(int slot) {
+            return pool.authorHash(records.get(slot));
+        }
+        
+        @Override
+        public boolean matches(int slot, String key) {
+            return pool.matchesAuthor(records.get(slot), key);
+        }
+    }
+    
+    // A book backed by one slot of the columns for as long as the slot holds
+    // it. The view keeps the slot's fields as it last read them, which is what
+    // it reads and changes once the book has left the slot. It keeps the
+    // strings' dictionary ids rather than the record, since the pool reuses a
+    // record once no slot holds it.
+    private final class SlotBook extends Book {
+        private final int slot;
+        private final int generation;
+        private int nameId;
+        private int authorId;
+        private int isbnId;
+        private double price;
+        private int quantity;
+        
+        // Called with the lock held
+        SlotBook(int slot) {
+            this.slot = slot;
+            this.generation = generations.get(slot);
+            int record = records.get(slot);
+            this.nameId = pool.nameId(record);
+            this.authorId = pool.authorId(record);
+            this.isbnId = pool.isbnId(record);
+            this.price = prices.get(slot);
+            this.quantity = quantities.get(slot);
+            setId(ids.get(slot));
+        }
+        
+        CompactLibrary owner() {
+            return CompactLibrary.this;
+        }
+        
+        boolean holdsSlot() {
+            return generations.get(slot) == generation && isLive(slot);
+        }
+        
+        @Override
+        public String getBookName() {
+            lock.readLock().lock();
+            try {
+                if (holdsSlot()) {
+                    nameId = pool.nameId(records.get(slot));
+                }
+                return pool.nameOf(nameId);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        @Override
+        public void setBookName(String bookName) {
+            if (bookName == null || bookName.trim().isEmpty()) {
+                throw new IllegalArgumentException("Book name cannot be null or empty");
+            }
+            lock.writeLock().lock();
+            try {
+                rename(this, bookName.trim());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        @Override
+        public String getBookAuthor() {
+            lock.readLock().lock();
+            try {
+                if (holdsSlot()) {
+                    authorId = pool.authorId(records.get(slot));
+                }
+                return pool.authorName(authorId);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        @Override
+        public void setBookAuthor(String bookAuthor) {
+            if (bookAuthor == null || bookAuthor.trim().isEmpty()) {
+                throw new IllegalArgumentException("Author name cannot be null or empty");
+            }
+            lock.writeLock().lock();
+            try {
+                changeAuthor(this, bookAuthor.trim());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        @Override
+        public double getBookPrice() {
+            lock.readLock().lock();
+            try {
+                synchronized (stripes[slot & (STRIPES - 1)]) {
+                    if (holdsSlot()) {
+                        price = prices.get(slot);
+                    }
+                    return price;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        @Override
+        public void setBookPrice(double bookPrice) {
+            if (bookPrice < 0) {
+                throw new IllegalArgumentException("Book price cannot be negative");
+            }
+            updatePrice(this, bookPrice);
+        }
+        
+        @Override
+        public String getIsbn() {
+            lock.readLock().lock();
+            try {
+                if (holdsSlot()) {
+                    isbnId = pool.isbnId(records.get(slot));
+                }
+                return pool.isbnOf(isbnId);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        @Override
+        public void setIsbn(String isbn) {
+            String value = validIsbn(isbn);
+            lock.writeLock().lock();
+            try {
+                changeIsbn(this, value);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        @Override
+        public int getQuantity() {
+            lock.readLock().lock();
+            try {
+                synchronized (stripes[slot & (STRIPES - 1)]) {
+                    if (holdsSlot()) {
+                        quantity = quantities.get(slot);
+                    }
+                    return quantity;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        @Override
+        public void setQuantity(int quantity) {
+            if (quantity < 0) {
+                throw new IllegalArgumentException("Quantity cannot be negative");
+            }
+            changeQuantity(quantity, true);
+        }
+        
+        @Override
+        public void incrementQuantity() {
+            changeQuantity(1, false);
+        }
+        
+        @Override
+        public boolean decrementQuantity() {
+            return changeQuantity(-1, false);
+        }
+        
+        private boolean changeQuantity(int value, boolean absolute) {
+            lock.readLock().lock();
+            try {
+                synchronized (stripes[slot & (STRIPES - 1)]) {
+                    if (holdsSlot()) {
+                        return updateQuantity(slot, value, absolute);
+                    }
+                    int newQuantity = absolute ? value : quantity + value;
+                    if (newQuantity < 0) {
+                        return false;
+                    }
+                    quantity = newQuantity;
+                    return true;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
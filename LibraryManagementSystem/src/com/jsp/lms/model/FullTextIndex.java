@@ -0,0 +1,185 @@
+package com.jsp.lms.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Inverted index over the words of each book's title and author, ranked with
+// BM25. Each word has a PostingList of (id, term frequency) pairs; new books
+// have the highest ids, so they are appended in place.
+final class FullTextIndex implements CatalogIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    
+    private final Map<String, PostingList> terms = new HashMap<>();
+    private final LongIntMap documentLengths = new LongIntMap();
+    private long totalLength;
+    
+    @Override
+    public void add(Book book) {
+        List<String> words = words(book);
+        if (words.isEmpty()) {
+            return;
+        }
+        long id = book.getId();
+        for (Map.Entry<String, Integer> term : frequencies(words).entrySet()) {
+            terms.computeIfAbsent(term.getKey(), k -> new PostingList()).add(id, term.getValue());
+        }
+        documentLengths.put(id, words.size());
+        totalLength += words.size();
+    }
+    
+    @Override
+    public void remove(Book book) {
+        long id = book.getId();
+        int length = documentLengths.remove(id, -1);
+        if (length < 0) {
+            return;
+        }
+        totalLength -= length;
+        for (String term : frequencies(words(book)).keySet()) {
+            PostingList postings = terms.get(term);
+            if (postings != null) {
+                postings.remove(id);
+                if (postings.size() <= 0) {
+                    terms.remove(term);
+                }
+            }
+        }
+    }
+    
+    // Ids of the best matches for the query's words, best first. With matchAll
+    // a book must contain every word, otherwise at least one of them.
+    long[] search(String query, boolean matchAll, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty() || documentLengths.size() == 0) {
+            return new long[0];
+        }
+        
+        List<long[]> ids = new ArrayList<>();
+        List<int[]> frequencies = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (String term : queryTerms) {
+            PostingList postings = terms.get(term);
+            if (postings == null || postings.size() <= 0) {
+                if (matchAll) {
+                    return new long[0];
+                }
+                continue;
+            }
+            int count = postings.size();
+            long[] termIds = new long[count];
+            int[] termFrequencies = new int[count];
+            count = postings.decode(termIds, termFrequencies);
+            ids.add(Arrays.copyOf(termIds, count));
+            frequencies.add(Arrays.copyOf(termFrequencies, count));
+            weights.add(idf(count));
+        }
+        if (ids.isEmpty()) {
+            return new long[0];
+        }
+        
+        // Walk all lists in id order, scoring each id that qualifies
+        double averageLength = (double) totalLength / documentLengths.size();
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(limit, 1024) + 1);
+        int[] positions = new int[ids.size()];
+        while (true) {
+            long id = Long.MAX_VALUE;
+            for (int t = 0; t < ids.size(); t++) {
+                if (positions[t] < ids.get(t).length) {
+                    id = Math.min(id, ids.get(t)[positions[t]]);
+                }
+            }
+            if (id == Long.MAX_VALUE) {
+                break;
+            }
+            double score = 0;
+            int matched = 0;
+            double norm = K1 * (1 - B + B * documentLengths.get(id, 0) / averageLength);
+            for (int t = 0; t < ids.size(); t++) {
+                int position = positions[t];
+                if (position < ids.get(t).length && ids.get(t)[position] == id) {
+                    int frequency = frequencies.get(t)[position];
+                    score += weights.get(t) * frequency * (K1 + 1) / (frequency + norm);
+                    matched++;
+                    positions[t]++;
+                }
+            }
+            if (matchAll && matched < queryTerms.size()) {
+                continue;
+            }
+            best.add(new Hit(id, score));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        
+        long[] result = new long[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll().id;
+        }
+        return result;
+    }
+    
+    private double idf(int documentFrequency) {
+        int documents = documentLengths.size();
+        return Math.log(1 + (documents - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+    
+    // Lower-cased runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+    
+    static List<String> words(Book book) {
+        List<String> words = tokenize(book.getBookName());
+        words.addAll(tokenize(book.getBookAuthor()));
+        return words;
+    }
+    
+    private static Map<String, Integer> frequencies(List<String> words) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String word : words) {
+            frequencies.merge(word, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+    
+    // Min-heap order: lower score first, and on a tie the higher id, so the
+    // heap keeps the best scores and prefers older books
+    private static final class Hit implements Comparable<Hit> {
+        final long id;
+        final double score;
+        
+        Hit(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+        
+        @Override
+        public int compareTo(Hit other) {
+            int result = Double.compare(score, other.score);
+            return result != 0 ? result : Long.compare(other.id, id);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.jsp.lms.model;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Borrowers waiting for a copy, in a lock-free FIFO queue per book. A hold is
+// queued first and the queue drained after, and every return drains after
+// restoring its copy, so whichever of the two comes last sees both the copy
+// and the hold: no copy is left idle while someone waits, and nothing polls.
+// A drain claims a copy before it takes a hold off the queue and gives the
+// copy back if the queue turned out empty or every hold was already done.
+final class HoldQueues {
+    private final Library library;
+    private final ConcurrentHashMap<Long, Queue<Hold>> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    
+    HoldQueues(Library library) {
+        this.library = library;
+    }
+    
+    // Queues a hold and hands it a copy at once if one is free
+    CompletableFuture<Loan> hold(String borrower, long bookId, String bookName, Duration loanPeriod, Duration timeout) {
+        Queue<Hold> queue = queues.computeIfAbsent(bookId, k -> new ConcurrentLinkedQueue<>());
+        Hold hold = new Hold(borrower, bookName, loanPeriod);
+        queue.add(hold);
+        waiting.incrementAndGet();
+        
+        // Cancelled or timed out: leave the queue, unless a drain already took it
+        hold.whenComplete((loan, failure) -> {
+            if (failure != null && queue.remove(hold)) {
+                waiting.decrementAndGet();
+            }
+        });
+        if (timeout != null) {
+            ScheduledFuture<?> expiry = Timeouts.EXECUTOR.schedule(
+                    () -> hold.completeExceptionally(new TimeoutException("No copy was returned in time")),
+                    timeout.toNanos(), TimeUnit.NANOSECONDS);
+            hold.whenComplete((loan, failure) -> expiry.cancel(false));
+        }
+        
+        release(bookId);
+        return hold;
+    }
+    
+    // Hands free copies of the book to the holds at the head of its queue
+    void release(long bookId) {
+        Queue<Hold> queue = queues.get(bookId);
+        if (queue == null) {
+            return;
+        }
+        while (!queue.isEmpty() && library.borrowBook(bookId)) {
+            if (!fulfil(queue, bookId)) {
+                restock(bookId); // and look again, in case a hold arrived meanwhile
+            }
+        }
+    }
+    
+    // A plain read, so returns skip the queues while nobody waits
+    boolean hasWaiters() {
+        return waiting.get() > 0;
+    }
+    
+    int waitingCount(long bookId) {
+        Queue<Hold> queue = queues.get(bookId);
+        return queue != null ? queue.size() : 0;
+    }
+    
+    // Gives the claimed copy to the first hold still waiting; false if none is
+    private boolean fulfil(Queue<Hold> queue, long bookId) {
+        Hold hold;
+        while ((hold = queue.poll()) != null) {
+            waiting.decrementAndGet();
+            if (hold.isDone()) {
+                continue;
+            }
+            LoanLedger ledger = library.getLoanLedger();
+            Loan loan = ledger.open(hold.borrower, bookId, hold.bookName, hold.loanPeriod);
+            if (hold.complete(loan)) {
+                return true;
+            }
+            ledger.cancel(loan); // cancelled while the loan was being opened
+        }
+        return false;
+    }
+    
+    private void restock(long bookId) {
+        Book book = library.findBookById(bookId);
+        if (book != null) {
+            book.incrementQuantity();
+        }
+    }
+    
+    private static final class Hold extends CompletableFuture<Loan> {
+        final String borrower;
+        final String bookName;
+        final Duration loanPeriod;
+        
+        Hold(String borrower, String bookName, Duration loanPeriod) {
+            this.borrower = borrower;
+            this.bookName = bookName;
+            this.loanPeriod = loanPeriod;
+        }
+    }
+    
+    // One daemon thread for every hold's timeout, started on first use
+    private static final class Timeouts {
+        static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "hold-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        static {
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.jsp.lms.model;
+
+// ISBN parsing for lookups and merging. An ISBN-10 and the ISBN-13 it became
+// (the same digits behind a 978 prefix, with a new check digit) name the same
+// book, so both parse to one key: the 13-digit ISBN as a long. Hyphens and
+// spaces are ignored and the check digit must match. Parsing never allocates.
+public final class Isbn {
+    public static final long INVALID = -1;
+    
+    private Isbn() {
+    }
+    
+    // The key of the given ISBN-10 or ISBN-13, or INVALID if it is not one
+    public static long parse(CharSequence text) {
+        if (text == null) {
+            return INVALID;
+        }
+        long digits = 0;
+        long firstNine = 0;
+        int count = 0;
+        int weighted10 = 0; // ISBN-10 checksum, weights 10 down to 1
+        int weighted13 = 0; // ISBN-13 checksum, weights 1, 3, 1, ...
+        boolean checkX = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if ((c == 'X' || c == 'x') && count == 9) {
+                digit = 10; // only as an ISBN-10 check digit
+                checkX = true;
+            } else {
+                return INVALID;
+            }
+            if (count == 13) {
+                return INVALID;
+            }
+            if (count == 9) {
+                firstNine = digits;
+            }
+            weighted10 += (10 - count) * digit;
+            weighted13 += (count % 2 == 0 ? 1 : 3) * digit;
+            digits = digits * 10 + digit;
+            count++;
+        }
+        
+        if (count == 10) {
+            if (weighted10 % 11 != 0) {
+                return INVALID;
+            }
+            // 978 followed by the first nine digits, then the ISBN-13 check digit
+            long body = 978000000000L + firstNine;
+            return body * 10 + checkDigit13(body);
+        }
+        if (count == 13 && !checkX && weighted13 % 10 == 0) {
+            long prefix = digits / 10000000000L;
+            return prefix == 978 || prefix == 979 ? digits : INVALID;
+        }
+        return INVALID;
+    }
+    
+    public static boolean isValid(CharSequence text) {
+        return parse(text) != INVALID;
+    }
+    
+    private static int checkDigit13(long body) {
+        int sum = 0;
+        for (int position = 11; position >= 0; position--) {
+            int digit = (int) (body % 10);
+            body /= 10;
+            sum += (position % 2 == 0 ? 1 : 3) * digit;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
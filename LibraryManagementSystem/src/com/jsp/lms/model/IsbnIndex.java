@@ -0,0 +1,62 @@
+package com.jsp.lms.model;
+
+// ISBN key -> book id, for the books whose ISBN is valid. As with titles, the
+// first book listed under an ISBN keeps it; later ones (only restores and
+// updates can add them) are chained behind it by id and take over in order.
+final class IsbnIndex implements CatalogIndex {
+    private final LongLongMap ids = new LongLongMap(); // ISBN key -> first book id
+    private final LongLongMap next = new LongLongMap(); // book id -> next book id with the same ISBN
+    
+    @Override
+    public void add(Book book) {
+        long key = Isbn.parse(book.getIsbn());
+        if (key == Isbn.INVALID) {
+            return;
+        }
+        long head = ids.get(key, 0);
+        if (head == 0) {
+            ids.put(key, book.getId());
+            return;
+        }
+        long tail = head;
+        for (long following = next.get(tail, 0); following != 0; following = next.get(tail, 0)) {
+            tail = following;
+        }
+        next.put(tail, book.getId());
+    }
+    
+    @Override
+    public void remove(Book book) {
+        long key = Isbn.parse(book.getIsbn());
+        long head = key != Isbn.INVALID ? ids.get(key, 0) : 0;
+        if (head == 0) {
+            return;
+        }
+        long id = book.getId();
+        long following = next.remove(id, 0);
+        if (head == id) {
+            if (following != 0) {
+                ids.put(key, following);
+            } else {
+                ids.remove(key, 0);
+            }
+            return;
+        }
+        for (long previous = head, current = next.get(previous, 0); current != 0;
+                previous = current, current = next.get(previous, 0)) {
+            if (current == id) {
+                if (following != 0) {
+                    next.put(previous, following);
+                } else {
+                    next.remove(previous, 0);
+                }
+                return;
+            }
+        }
+    }
+    
+    // Id of the book listed under the key, or 0 if there is none
+    long find(long key) {
+        return ids.get(key, 0);
+    }
+}
@@ -0,0 +1,34 @@
+package com.jsp.lms.model;
+
+// Read-only catalog a Library can serve without loading it up front, e.g. a
+// memory-mapped snapshot. Records are addressed by index, 0 to size() - 1, in
+// ascending id order; lookups take keys already normalized by
+// Library.normalizeTitle/normalizeAuthor. Must allow concurrent readers.
+public interface LazyCatalog {
+    int size();
+    
+    long lastBookId();
+    
+    // Totals over every record
+    long totalCopies();
+    
+    int availableTitles();
+    
+    long inventoryValueCents();
+    
+    long idAt(int index);
+    
+    // Index of the record with the id, or -1
+    int indexOf(long bookId);
+    
+    // Index of the first record with the title, or -1
+    int findByTitle(String normalizedTitle);
+    
+    int[] findByAuthor(String normalizedAuthor);
+    
+    // Indexes of the records whose ISBN has the given Isbn.parse key
+    int[] findByIsbn(long isbn);
+    
+    // A new Book built from the record; its id is idAt(index)
+    Book load(int index);
+}
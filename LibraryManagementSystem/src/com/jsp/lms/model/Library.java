@@ -1,24 +1,92 @@
 package com.jsp.lms.model;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 public class Library {
     private String libraryName;
     private String libraryAddress;
     private int pincode;
-    private List<Book> books;
+    private BookTable books; // book id -> book, in catalog order
+    private volatile Map<String, Book> titleIndex; // normalized title -> book
+    private Map<String, List<Book>> titleDuplicates = new HashMap<>(); // other books with an indexed title, under the write lock
+    private volatile Map<String, List<Book>> authorIndex; // normalized author -> books
+    
+    final AtomicLong nextId = new AtomicLong(); // shared with CompactLibrary
+    private volatile CatalogListener[] listeners = new CatalogListener[0];
+    
+    // Secondary indexes, each built the first time a query needs it
+    private volatile CatalogIndex[] indexes = new CatalogIndex[0];
+    private static final int FUZZY_CANDIDATES = 1000; // titles verified per suggestTitles
+    static final int LISTING_PAGE = 1024; // books copied out per lock hold by forEachBook
+    
+    // Who has which copy, and who waits for one, created on first use
+    private volatile LoanLedger loanLedger;
+    private volatile HoldQueues holdQueues;
+    
+    // Running totals, kept exact by every add/remove/update and quantity change
+    private final LongAdder totalCopies = new LongAdder();
+    private final LongAdder availableTitles = new LongAdder();
+    private final LongAdder inventoryValueCents = new LongAdder();
+    
+    // Catalog served lazily: its books join the tables above on first access,
+    // and the cold counters cover the records not hydrated yet
+    private volatile LazyCatalog lazyCatalog;
+    private BitSet hydrated; // record indexes already hydrated, under the write lock
+    private volatile int coldTitles;
+    private volatile int coldAvailableTitles;
+    private volatile long coldCopies;
+    private volatile long coldValueCents;
+    
+    // Thread-safe mode: structural changes take the write lock, while borrow and
+    // return only touch the concurrent title index and the book, under its monitor
+    private final boolean threadSafe;
+    final ReadWriteLock lock;
+    
+    // Work listeners put off until the thread making a change has let go of the
+    // library and the book (see afterChange), and how many threads have some
+    private final ThreadLocal<List<Runnable>> deferred = new ThreadLocal<>();
+    private final AtomicInteger deferring = new AtomicInteger();
     
     // Default constructor
     public Library() {
-        this.books = new ArrayList<>();
+        this(false);
+    }
+    
+    public Library(boolean threadSafe) {
+        this.threadSafe = threadSafe;
+        this.lock = threadSafe ? new LibraryLock(this::runDeferred) : NoOpReadWriteLock.INSTANCE;
+        this.books = new BookTable();
+        this.titleIndex = newIndex();
+        this.authorIndex = newIndex();
     }
     
     // Parameterized constructor
     public Library(String libraryName, String libraryAddress, int pincode) {
-        this();
+        this(libraryName, libraryAddress, pincode, false);
+    }
+    
+    public Library(String libraryName, String libraryAddress, int pincode, boolean threadSafe) {
+        this(threadSafe);
         this.libraryName = libraryName;
         this.libraryAddress = libraryAddress;
         this.pincode = pincode;
@@ -61,12 +129,107 @@ public class Library {
         }
     }
     
+    public boolean isThreadSafe() {
+        return threadSafe;
+    }
+    
+    public void addCatalogListener(CatalogListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            CatalogListener[] current = listeners;
+            CatalogListener[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+            listeners = updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void removeCatalogListener(CatalogListener listener) {
+        lock.writeLock().lock();
+        try {
+            List<CatalogListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+            remaining.remove(listener);
+            listeners = remaining.toArray(new CatalogListener[0]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Runs the action on the current thread once it has let go of the library
+    // and of the book it is changing, for listeners that must block on a change
+    // (such as a journal waiting for the disk) without holding up every other
+    // thread that needs either. Without thread safety it runs right away.
+    public void afterChange(Runnable action) {
+        if (!threadSafe) {
+            action.run();
+            return;
+        }
+        List<Runnable> actions = deferred.get();
+        if (actions == null) {
+            actions = new ArrayList<>(1);
+            deferred.set(actions);
+        }
+        if (actions.isEmpty()) {
+            deferring.incrementAndGet();
+        }
+        actions.add(action);
+    }
+    
+    // Called as the thread lets go of the library lock, or of a book's monitor
+    // taken without it; a plain read while no thread has deferred work
+    void runDeferred() {
+        if (deferring.get() == 0) {
+            return;
+        }
+        List<Runnable> actions = deferred.get();
+        if (actions == null || actions.isEmpty() || ((LibraryLock) lock).isHeldByCurrentThread()) {
+            return;
+        }
+        Runnable[] pending = actions.toArray(new Runnable[0]);
+        actions.clear();
+        deferring.decrementAndGet();
+        for (Runnable action : pending) {
+            action.run();
+        }
+    }
+    
     public List<Book> getBooks() {
-        return new ArrayList<>(books); // Return defensive copy
+        hydrateAll();
+        lock.readLock().lock();
+        try {
+            List<Book> copy = new ArrayList<>(books.size());
+            books.copyTo(copy);
+            return copy; // Return defensive copy
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     public void setBooks(List<Book> books) {
-        this.books = books != null ? new ArrayList<>(books) : new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            List<Book> previous = new ArrayList<>(this.books.size());
+            this.books.copyTo(previous);
+            for (Book book : previous) {
+                untrack(book);
+            }
+            discardLazyCatalog();
+            List<Book> incoming = books != null ? books : Collections.<Book>emptyList();
+            this.books = new BookTable(incoming.size());
+            this.titleIndex = newIndex();
+            this.titleDuplicates = new HashMap<>();
+            this.authorIndex = newIndex();
+            for (Book book : incoming) {
+                track(book, nextId.incrementAndGet(), true);
+                indexTitle(book); // first match wins, as in a linear scan
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
     
     // Business methods
@@ -75,14 +238,102 @@ public class Library {
             return false;
         }
         
-        // Check if book already exists
-        Book existingBook = findBookByName(book.getBookName());
-        if (existingBook != null) {
-            existingBook.incrementQuantity();
+        lock.writeLock().lock();
+        try {
+            insert(book);
             return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Adds many books under a single lock acquisition, with the same merge-by-title
+    // rule as addBook. Returns how many of the given books were accepted.
+    public int addBooks(Iterable<Book> newBooks) {
+        if (newBooks == null) {
+            return 0;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            if (newBooks instanceof Collection) {
+                int incoming = ((Collection<?>) newBooks).size();
+                books.ensureCapacity(nextId.get() + incoming);
+                if (incoming > titleIndex.size()) {
+                    titleIndex = presized(titleIndex, titleIndex.size() + incoming);
+                }
+            }
+            int accepted = 0;
+            for (Book book : newBooks) {
+                if (book != null) {
+                    insert(book);
+                    accepted++;
+                }
+            }
+            return accepted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Puts a book back under an id it held before, e.g. when recovering a catalog
+    // from disk; a book already holding that id is replaced. As in setBooks, a
+    // title finds the first book restored under it.
+    public void restoreBook(long bookId, Book book) {
+        if (bookId <= 0 || book == null) {
+            throw new IllegalArgumentException("Restored book needs a positive id");
+        }
+        
+        lock.writeLock().lock();
+        try {
+            Book current = findBookById(bookId);
+            if (current != null) {
+                remove(current);
+            }
+            track(book, bookId, true);
+            indexTitle(book);
+            reserveBookIds(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Highest id handed out so far; ids are never reused for new books
+    public long getLastBookId() {
+        return nextId.get();
+    }
+    
+    public void reserveBookIds(long lastBookId) {
+        nextId.accumulateAndGet(lastBookId, Math::max);
+    }
+    
+    // Serves the given catalog without loading it: each book is read from it the
+    // first time it is looked up, and full listings read whatever is left.
+    // Hydrating a book is not a catalog change, so listeners are not told.
+    public void loadLazily(LazyCatalog catalog) {
+        if (catalog == null) {
+            throw new IllegalArgumentException("Catalog cannot be null");
         }
         
-        return books.add(book);
+        lock.writeLock().lock();
+        try {
+            if (books.size() > 0 || lazyCatalog != null) {
+                throw new IllegalStateException("A catalog can only be loaded into an empty library");
+            }
+            books.ensureCapacity(catalog.lastBookId());
+            hydrated = new BitSet(catalog.size());
+            coldTitles = catalog.size();
+            coldAvailableTitles = catalog.availableTitles();
+            coldCopies = catalog.totalCopies();
+            coldValueCents = catalog.inventoryValueCents();
+            reserveBookIds(catalog.lastBookId());
+            lazyCatalog = catalog;
+            if (indexes.length > 0) {
+                hydrateAll(); // secondary indexes cover the whole catalog
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
     
     public boolean removeBook(String bookName) {
@@ -90,11 +341,23 @@ public class Library {
             return false;
         }
         
-        Book book = findBookByName(bookName);
-        if (book != null) {
-            return books.remove(book);
+        lock.writeLock().lock();
+        try {
+            Book book = findBookByName(bookName);
+            return book != null && remove(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public boolean removeBook(long bookId) {
+        lock.writeLock().lock();
+        try {
+            Book book = findBookById(bookId);
+            return book != null && remove(book);
+        } finally {
+            lock.writeLock().unlock();
         }
-        return false;
     }
     
     public Book findBookByName(String bookName) {
@@ -102,36 +365,273 @@ public class Library {
             return null;
         }
         
-        return books.stream()
-                .filter(book -> book.getBookName().equalsIgnoreCase(bookName.trim()))
-                .findFirst()
-                .orElse(null);
+        return findTitle(normalizeTitle(bookName));
+    }
+    
+    public Book findBookById(long bookId) {
+        Book book = books.get(bookId);
+        return book != null || lazyCatalog == null ? book : hydrateId(bookId);
+    }
+    
+    // Whether the given instance is the one this library holds under its id
+    public boolean holdsBook(Book book) {
+        return book != null && books.get(book.getId()) == book;
     }
     
     public List<Book> findBooksByAuthor(String authorName) {
         if (authorName == null || authorName.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        String key = normalizeAuthor(authorName);
+        if (lazyCatalog != null) {
+            hydrateAuthor(key);
+        }
+        List<Book> postings = authorIndex.get(key);
+        return postings != null ? Collections.unmodifiableList(postings) : Collections.<Book>emptyList();
+    }
+    
+    // Titles starting with the given prefix, ignoring case and surrounding
+    // spaces, in alphabetical order; at most limit of them. The first call
+    // builds the index, which loads the whole catalog if it is served lazily.
+    public List<String> completeTitle(String prefix, int limit) {
+        String key = normalizeTitle(prefix);
+        if (key == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        TitlePrefixIndex index = index(TitlePrefixIndex.class, TitlePrefixIndex::new);
+        long[] ids;
+        lock.readLock().lock();
+        try {
+            ids = index.complete(key, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<String> titles = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Book book = findBookById(id);
+            String title = book != null ? book.getBookName() : null;
+            if (title != null && normalizeTitle(title).startsWith(key)) {
+                titles.add(title); // skips books removed or renamed since the query
+            }
+        }
+        return titles;
+    }
+    
+    // Titles within a few typing mistakes of the given one, for "did you mean"
+    // suggestions: closest first, at most limit of them. Short titles allow one
+    // edit, longer ones up to three. Case and surrounding blanks are ignored.
+    public List<String> suggestTitles(String title, int limit) {
+        String key = normalizeTitle(title);
+        if (key == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int maxEdits = TrigramIndex.maxEdits(key);
+        
+        TrigramIndex index = index(TrigramIndex.class, TrigramIndex::new);
+        long[] ids;
+        lock.readLock().lock();
+        try {
+            ids = index.candidates(key, maxEdits, FUZZY_CANDIDATES);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<List<String>> byDistance = new ArrayList<>();
+        for (int distance = 0; distance <= maxEdits; distance++) {
+            byDistance.add(new ArrayList<>());
+        }
+        for (long id : ids) {
+            Book book = findBookById(id);
+            String candidate = book != null ? normalizeTitle(book.getBookName()) : null;
+            if (candidate != null) {
+                int distance = TrigramIndex.editDistance(key, candidate, maxEdits);
+                if (distance <= maxEdits) {
+                    byDistance.get(distance).add(book.getBookName());
+                }
+            }
+        }
+        List<String> titles = new ArrayList<>(limit);
+        for (List<String> group : byDistance) {
+            for (String match : group) {
+                if (titles.size() < limit) {
+                    titles.add(match);
+                }
+            }
+        }
+        return titles;
+    }
+    
+    // Books whose title or author contains the query's words, best matches
+    // first (ranked with BM25); at most limit of them. With matchAll a book
+    // must contain every word, otherwise any one of them. Words are runs of
+    // letters and digits, compared ignoring case.
+    public List<Book> searchBooks(String query, boolean matchAll, int limit) {
+        if (query == null || query.trim().isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        FullTextIndex index = index(FullTextIndex.class, FullTextIndex::new);
+        long[] ids;
+        lock.readLock().lock();
+        try {
+            ids = index.search(query, matchAll, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<String> words = FullTextIndex.tokenize(query);
+        List<Book> results = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Book book = findBookById(id);
+            if (book == null) {
+                continue; // removed since the query
+            }
+            List<String> bookWords = FullTextIndex.words(book);
+            if (matchAll ? bookWords.containsAll(words) : !Collections.disjoint(bookWords, words)) {
+                results.add(book);
+            }
+        }
+        return results;
+    }
+    
+    // Books priced from minPrice to maxPrice inclusive, cheapest first (equal
+    // prices in the order they were added); at most limit of them
+    public List<Book> findBooksByPrice(double minPrice, double maxPrice, int limit) {
+        List<Book> books = booksByPrice(minPrice, maxPrice, false, limit);
+        books.removeIf(book -> book.getBookPrice() < minPrice || book.getBookPrice() > maxPrice); // repriced since the query
+        return books;
+    }
+    
+    // The limit most expensive books, most expensive first
+    public List<Book> getMostExpensiveBooks(int limit) {
+        return booksByPrice(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true, limit);
+    }
+    
+    // The limit cheapest books, cheapest first
+    public List<Book> getCheapestBooks(int limit) {
+        return booksByPrice(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false, limit);
+    }
+    
+    private List<Book> booksByPrice(double minPrice, double maxPrice, boolean descending, int limit) {
+        if (limit <= 0) {
             return new ArrayList<>();
         }
         
-        return books.stream()
-                .filter(book -> book.getBookAuthor().equalsIgnoreCase(authorName.trim()))
-                .collect(Collectors.toList());
+        PriceIndex index = index(PriceIndex.class, PriceIndex::new);
+        long[] ids;
+        lock.readLock().lock();
+        try {
+            ids = index.range(minPrice, maxPrice, descending, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Book> books = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Book book = findBookById(id);
+            if (book != null) {
+                books.add(book); // skips books removed since the query
+            }
+        }
+        return books;
     }
     
     public List<Book> getAvailableBooks() {
-        return books.stream()
-                .filter(Book::isAvailable)
-                .collect(Collectors.toList());
+        hydrateAll();
+        List<Book> available = new ArrayList<>(getAvailableTitleCount());
+        books.copyAvailableTo(available); // in-stock bits, flipped only when a quantity crosses zero
+        return available;
+    }
+    
+    // Hands every book, or every book in stock, to the action in catalog order
+    // without building the whole list: books are copied out a page at a time
+    // and the lock is never held while the action runs, so a slow consumer
+    // does not hold up writers. Books added or removed meanwhile may be missed.
+    public void forEachBook(boolean availableOnly, Consumer<? super Book> action) {
+        hydrateAll();
+        List<Book> page = new ArrayList<>(LISTING_PAGE);
+        long nextBookId = 1;
+        while (nextBookId > 0) {
+            page.clear();
+            nextBookId = copyBooks(nextBookId, availableOnly, page);
+            page.forEach(action);
+        }
+    }
+    
+    // Copies up to a page of books from the given id on; returns the id to go
+    // on from, or 0 once the catalog is done
+    long copyBooks(long fromId, boolean availableOnly, List<Book> target) {
+        long lastId = nextId.get();
+        lock.readLock().lock();
+        try {
+            long id = fromId;
+            for (; id <= lastId && target.size() < LISTING_PAGE; id++) {
+                Book book = books.get(id);
+                if (book != null && (!availableOnly || book.isAvailable())) {
+                    target.add(book);
+                }
+            }
+            return id <= lastId ? id : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     public int getTotalBooks() {
-        return books.size();
+        return books.size() + coldTitles;
     }
     
     public int getTotalBookCopies() {
-        return books.stream()
-                .mapToInt(Book::getQuantity)
-                .sum();
+        return (int) (totalCopies.sum() + coldCopies);
+    }
+    
+    public int getAvailableTitleCount() {
+        return (int) availableTitles.sum() + coldAvailableTitles;
+    }
+    
+    // Quantity counts copies on the shelf, so every copy counted is available
+    public int getAvailableBookCopies() {
+        return getTotalBookCopies();
+    }
+    
+    public double getTotalInventoryValue() {
+        return (inventoryValueCents.sum() + coldValueCents) / 100.0;
+    }
+    
+    // Full report (value, prices, stock-outs, quantities and authors) in one
+    // pass over the catalog, split across the common fork-join pool. The pass
+    // holds the read lock, so structural changes wait for it while borrowing
+    // and returns go on; each quantity is read once, as of some moment during
+    // the pass.
+    public CatalogStatistics computeStatistics() {
+        hydrateAll();
+        lock.readLock().lock();
+        try {
+            return LongStream.range(0, statisticsRows()).parallel()
+                    .collect(StatisticsAccumulator::new, this::accumulateRow, StatisticsAccumulator::merge)
+                    .finish(this::authorName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // The rows of the statistics pass: here one per book id, empty or not.
+    // Called by the pass's worker threads while the caller holds the read lock.
+    long statisticsRows() {
+        return nextId.get();
+    }
+    
+    void accumulateRow(StatisticsAccumulator totals, long row) {
+        Book book = books.get(row + 1);
+        if (book != null) {
+            int quantity = book.getQuantity();
+            totals.add(book.getBookPrice(), quantity);
+            totals.addAuthor(book.getBookAuthor(), quantity);
+        }
+    }
+    
+    // Name of an author counted by dictionary id; this engine counts by name
+    String authorName(long authorId) {
+        return null;
     }
     
     public boolean updateBook(Book existingBook, Book updatedBook) {
@@ -139,14 +639,39 @@ public class Library {
             return false;
         }
         
-        int index = books.indexOf(existingBook);
-        if (index != -1) {
-            books.set(index, updatedBook);
-            return true;
+        lock.writeLock().lock();
+        try {
+            // The caller usually holds the tracked instance; otherwise fall back to
+            // the book with the same title, as long as it is equal to the one given
+            Book current = findBookById(existingBook.getId());
+            if (current != existingBook) {
+                current = findBookByName(existingBook.getBookName());
+                if (current == null || !current.equals(existingBook)) {
+                    return false;
+                }
+            }
+            return replace(current, updatedBook);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public boolean updateBook(long bookId, Book updatedBook) {
+        if (updatedBook == null) {
+            return false;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            Book current = findBookById(bookId);
+            return current != null && replace(current, updatedBook);
+        } finally {
+            lock.writeLock().unlock();
         }
-        return false;
     }
     
+    // Borrow and return never take the library lock: the title lookup reads the
+    // index directly and the quantity change only locks the book itself
     public boolean borrowBook(String bookName) {
         Book book = findBookByName(bookName);
         if (book != null && book.isAvailable()) {
@@ -155,15 +680,727 @@ public class Library {
         return false;
     }
     
+    // A return without a borrower only puts the copy back; closing a loan takes
+    // the borrower, see returnBook(String, long)
     public boolean returnBook(String bookName) {
         Book book = findBookByName(bookName);
         if (book != null) {
             book.incrementQuantity();
+            copyReturned(book.getId());
+            return true;
+        }
+        return false;
+    }
+    
+    public boolean borrowBook(long bookId) {
+        Book book = findBookById(bookId);
+        return book != null && book.decrementQuantity();
+    }
+    
+    public boolean returnBook(long bookId) {
+        Book book = findBookById(bookId);
+        if (book != null) {
+            book.incrementQuantity();
+            copyReturned(bookId);
             return true;
         }
         return false;
     }
     
+    // Lends a copy to the borrower for the loan period and records the loan in
+    // the ledger; null if the book is missing or has no copy left
+    public Loan borrowBook(String borrower, String bookName, Duration loanPeriod) {
+        LoanLedger.validate(borrower, loanPeriod);
+        Book book = findBookByName(bookName);
+        return book != null ? lend(borrower, book.getId(), book.getBookName(), loanPeriod) : null;
+    }
+    
+    public Loan borrowBook(String borrower, long bookId, Duration loanPeriod) {
+        LoanLedger.validate(borrower, loanPeriod);
+        Book book = findBookById(bookId);
+        return book != null ? lend(borrower, bookId, book.getBookName(), loanPeriod) : null;
+    }
+    
+    // Takes back the borrower's copy and closes their loan of it that falls due
+    // first; false if they have no open loan of the book
+    public boolean returnBook(String borrower, String bookName) {
+        Book book = findBookByName(bookName);
+        return book != null && returnBook(borrower, book.getId());
+    }
+    
+    public boolean returnBook(String borrower, long bookId) {
+        if (!getLoanLedger().close(borrower, bookId)) {
+            return false;
+        }
+        Book book = findBookById(bookId);
+        if (book != null) {
+            book.incrementQuantity();
+            copyReturned(bookId);
+        }
+        return true;
+    }
+    
+    // Lends a copy now if one is free, or else queues the borrower for one:
+    // holds on a book are filled in the order they were placed as copies come
+    // back, and the future completes with the loan, on the returning thread.
+    // Without a timeout the hold waits until it is filled or cancelled; with
+    // one, it fails with a TimeoutException once the timeout passes.
+    public CompletableFuture<Loan> borrowAsync(String borrower, String bookName, Duration loanPeriod, Duration timeout) {
+        LoanLedger.validate(borrower, loanPeriod);
+        Book book = findBookByName(bookName);
+        return book != null ? hold(borrower, book.getId(), book.getBookName(), loanPeriod, timeout) : bookNotFound();
+    }
+    
+    public CompletableFuture<Loan> borrowAsync(String borrower, long bookId, Duration loanPeriod, Duration timeout) {
+        LoanLedger.validate(borrower, loanPeriod);
+        Book book = findBookById(bookId);
+        return book != null ? hold(borrower, bookId, book.getBookName(), loanPeriod, timeout) : bookNotFound();
+    }
+    
+    // Holds on the book still waiting for a copy
+    public int getHoldCount(long bookId) {
+        HoldQueues holds = holdQueues;
+        return holds != null ? holds.waitingCount(bookId) : 0;
+    }
+    
+    public LoanLedger getLoanLedger() {
+        LoanLedger ledger = loanLedger;
+        if (ledger == null) {
+            synchronized (this) {
+                ledger = loanLedger;
+                if (ledger == null) {
+                    ledger = new LoanLedger();
+                    loanLedger = ledger;
+                }
+            }
+        }
+        return ledger;
+    }
+    
+    // Replaces the ledger, e.g. with one on another clock; loans still open in
+    // the old ledger stay there
+    public void setLoanLedger(LoanLedger loanLedger) {
+        if (loanLedger == null) {
+            throw new IllegalArgumentException("Loan ledger cannot be null");
+        }
+        this.loanLedger = loanLedger;
+    }
+    
+    // The book with the given ISBN, in either its ISBN-10 or ISBN-13 form, or
+    // null if the text is not a valid ISBN or no book has it. Allocation-free
+    // once the ISBN index is built.
+    public Book findByIsbn(String isbn) {
+        long key = Isbn.parse(isbn);
+        if (key == Isbn.INVALID) {
+            return null;
+        }
+        
+        hydrateIsbn(key);
+        IsbnIndex index = isbnIndex();
+        lock.readLock().lock();
+        try {
+            Book book = books.get(index.find(key));
+            return book != null && Isbn.parse(book.getIsbn()) == key ? book : null; // skips a book whose ISBN was set directly
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public boolean borrowByIsbn(String isbn) {
+        Book book = findByIsbn(isbn);
+        return book != null && book.decrementQuantity();
+    }
+    
+    public boolean returnByIsbn(String isbn) {
+        Book book = findByIsbn(isbn);
+        if (book != null) {
+            book.incrementQuantity();
+            copyReturned(book.getId());
+            return true;
+        }
+        return false;
+    }
+    
+    // Loan helpers
+    private Loan lend(String borrower, long bookId, String bookName, Duration loanPeriod) {
+        if (!borrowBook(bookId)) {
+            return null;
+        }
+        return getLoanLedger().open(borrower, bookId, bookName, loanPeriod);
+    }
+    
+    private CompletableFuture<Loan> hold(String borrower, long bookId, String bookName, Duration loanPeriod,
+            Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        HoldQueues holds = holdQueues;
+        if (holds == null) {
+            synchronized (this) {
+                holds = holdQueues;
+                if (holds == null) {
+                    holds = new HoldQueues(this);
+                    holdQueues = holds;
+                }
+            }
+        }
+        return holds.hold(borrower, bookId, bookName, loanPeriod, timeout);
+    }
+    
+    private static CompletableFuture<Loan> bookNotFound() {
+        CompletableFuture<Loan> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalArgumentException("Book not found"));
+        return future;
+    }
+    
+    // A returned copy goes to the first hold, a plain read while nothing is on
+    // hold. The ledger is left alone: without the borrower there is no telling
+    // whose loan the copy ends.
+    void copyReturned(long bookId) {
+        HoldQueues holds = holdQueues;
+        if (holds != null && holds.hasWaiters()) {
+            holds.release(bookId);
+        }
+    }
+    
+    // Structural helpers, called with the write lock held
+    private void insert(Book book) {
+        // Check if book already exists: the same ISBN, or else the same title
+        // unless both books have ISBNs, which makes them different editions
+        String key = normalizeTitle(book.getBookName());
+        Book existingBook = key != null ? findTitle(key) : null;
+        long isbn = Isbn.parse(book.getIsbn());
+        if (isbn != Isbn.INVALID) {
+            hydrateIsbn(isbn);
+            Book sameIsbn = books.get(isbnIndex().find(isbn));
+            if (sameIsbn != null && Isbn.parse(sameIsbn.getIsbn()) == isbn) {
+                existingBook = sameIsbn;
+            } else if (existingBook != null && Isbn.isValid(existingBook.getIsbn())) {
+                existingBook = null;
+            }
+        }
+        if (existingBook != null) {
+            existingBook.incrementQuantity();
+            return;
+        }
+        
+        // Track before publishing so borrowers, who skip the library lock, never see an untracked book
+        track(book, nextId.incrementAndGet(), true);
+        indexTitle(book); // an earlier edition keeps the title
+    }
+    
+    private boolean remove(Book book) {
+        unindexTitle(book, normalizeTitle(book.getBookName()));
+        books.remove(book.getId());
+        untrack(book);
+        return true;
+    }
+    
+    private boolean replace(Book current, Book updatedBook) {
+        // Refuse a rename onto a different book's title; editions already
+        // sharing a title can still be updated
+        String oldKey = normalizeTitle(current.getBookName());
+        String newKey = normalizeTitle(updatedBook.getBookName());
+        Book clash = newKey != null && !newKey.equals(oldKey) ? findTitle(newKey) : null;
+        if (clash != null && clash != current) {
+            return false;
+        }
+        
+        long id = current.getId();
+        untrack(current);
+        track(updatedBook, id, true); // keep the id and catalog position of the book it replaces
+        if (oldKey != null && oldKey.equals(newKey)) {
+            replaceTitle(oldKey, current, updatedBook);
+        } else {
+            unindexTitle(current, oldKey);
+            indexTitle(updatedBook);
+        }
+        return true;
+    }
+    
+    // Title index helpers, called with the write lock held. The index lists the
+    // first book added under each title; later ones wait in titleDuplicates, in
+    // the order they were added, and the next one takes over when it leaves.
+    private void indexTitle(Book book) {
+        String key = normalizeTitle(book.getBookName());
+        if (key != null && titleIndex.putIfAbsent(key, book) != null) {
+            titleDuplicates.computeIfAbsent(key, k -> new ArrayList<>(2)).add(book);
+        }
+    }
+    
+    private void unindexTitle(Book book, String key) {
+        if (key == null) {
+            return;
+        }
+        List<Book> waiting = titleDuplicates.get(key);
+        if (titleIndex.get(key) == book) {
+            if (waiting != null) {
+                titleIndex.put(key, waiting.remove(0));
+            } else {
+                titleIndex.remove(key);
+            }
+        } else if (waiting != null) {
+            waiting.removeIf(other -> other == book);
+        }
+        if (waiting != null && waiting.isEmpty()) {
+            titleDuplicates.remove(key);
+        }
+    }
+    
+    // Lists the updated book where the one it replaces was listed
+    private void replaceTitle(String key, Book current, Book updatedBook) {
+        if (titleIndex.get(key) == current) {
+            titleIndex.put(key, updatedBook);
+            return;
+        }
+        List<Book> waiting = titleDuplicates.get(key);
+        for (int i = 0; waiting != null && i < waiting.size(); i++) {
+            if (waiting.get(i) == current) {
+                waiting.set(i, updatedBook);
+                return;
+            }
+        }
+        indexTitle(updatedBook);
+    }
+    
+    // Lazy catalog helpers. Lookups search the catalog without the lock and only
+    // take it to hydrate a record that exists.
+    private Book findTitle(String key) {
+        Book book = titleIndex.get(key);
+        return book != null || lazyCatalog == null ? book : hydrateTitle(key);
+    }
+    
+    private Book hydrateTitle(String key) {
+        LazyCatalog catalog = lazyCatalog;
+        int index = catalog != null ? catalog.findByTitle(key) : -1;
+        if (index < 0) {
+            return null;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            hydrate(catalog, index);
+            return titleIndex.get(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private Book hydrateId(long bookId) {
+        LazyCatalog catalog = lazyCatalog;
+        int index = catalog != null ? catalog.indexOf(bookId) : -1;
+        if (index < 0) {
+            return null;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            hydrate(catalog, index);
+            return books.get(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void hydrateAuthor(String key) {
+        LazyCatalog catalog = lazyCatalog;
+        int[] indexes = catalog != null && key != null ? catalog.findByAuthor(key) : new int[0];
+        if (indexes.length == 0) {
+            return;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            for (int index : indexes) {
+                hydrate(catalog, index);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void hydrateIsbn(long isbn) {
+        LazyCatalog catalog = lazyCatalog;
+        int[] indexes = catalog != null ? catalog.findByIsbn(isbn) : new int[0];
+        if (indexes.length == 0) {
+            return;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            for (int index : indexes) {
+                hydrate(catalog, index);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void hydrateAll() {
+        if (lazyCatalog == null) {
+            return;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            LazyCatalog catalog = lazyCatalog;
+            if (catalog == null) {
+                return;
+            }
+            if (coldTitles > titleIndex.size()) {
+                titleIndex = presized(titleIndex, titleIndex.size() + coldTitles);
+            }
+            for (int index = 0; index < catalog.size() && lazyCatalog == catalog; index++) {
+                hydrate(catalog, index);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Moves one record from the cold counters into the tables; write lock held
+    private void hydrate(LazyCatalog catalog, int index) {
+        if (lazyCatalog != catalog || hydrated.get(index)) {
+            return; // already hydrated, and possibly removed or replaced since
+        }
+        hydrated.set(index);
+        Book book = catalog.load(index);
+        int quantity = book.getQuantity();
+        coldTitles--;
+        coldCopies -= quantity;
+        coldValueCents -= toCents(book.getBookPrice()) * quantity;
+        if (quantity > 0) {
+            coldAvailableTitles--;
+        }
+        track(book, catalog.idAt(index), false);
+        indexTitle(book);
+        if (coldTitles == 0) {
+            discardLazyCatalog();
+        }
+    }
+    
+    private void discardLazyCatalog() {
+        lazyCatalog = null;
+        hydrated = null;
+        coldTitles = 0;
+        coldAvailableTitles = 0;
+        coldCopies = 0;
+        coldValueCents = 0;
+    }
+    
+    // Secondary index helpers. The index of the given type, built from the
+    // whole catalog on first use and kept updated from then on.
+    private <T extends CatalogIndex> T index(Class<T> type, Supplier<T> factory) {
+        return index(type, factory, true);
+    }
+    
+    // With wholeCatalog false, a lazily served catalog is not hydrated for the
+    // index: it starts with the books hydrated so far and gains the others as
+    // they are hydrated, so callers hydrate the records they look up first
+    private <T extends CatalogIndex> T index(Class<T> type, Supplier<T> factory, boolean wholeCatalog) {
+        T index = findIndex(type);
+        if (index != null) {
+            return index;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            index = findIndex(type);
+            if (index == null) {
+                index = factory.get();
+                if (wholeCatalog || lazyCatalog == null) {
+                    index.addAll(getBooks());
+                } else {
+                    List<Book> hydratedBooks = new ArrayList<>(books.size());
+                    books.copyTo(hydratedBooks);
+                    index.addAll(hydratedBooks);
+                }
+                CatalogIndex[] current = indexes;
+                CatalogIndex[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = index;
+                indexes = updated;
+            }
+            return index;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Callers hydrate the records with the ISBN they look up, see hydrateIsbn
+    IsbnIndex isbnIndex() {
+        return index(IsbnIndex.class, IsbnIndex::new, false);
+    }
+    
+    private <T extends CatalogIndex> T findIndex(Class<T> type) {
+        for (CatalogIndex index : indexes) {
+            if (type.isInstance(index)) {
+                return type.cast(index);
+            }
+        }
+        return null;
+    }
+    
+    boolean hasIndexes() {
+        return indexes.length > 0;
+    }
+    
+    // Called with the write lock held as a book joins or leaves the catalog
+    void indexAdded(Book book) {
+        for (CatalogIndex index : indexes) {
+            index.add(book);
+        }
+    }
+    
+    void indexRemoved(Book book) {
+        for (CatalogIndex index : indexes) {
+            index.remove(book);
+        }
+    }
+    
+    // Prices change without the write lock, so this takes it; the caller must
+    // not hold the read lock
+    void indexRepriced(Book book) {
+        lock.writeLock().lock();
+        try {
+            if (holdsBook(book)) {
+                for (CatalogIndex index : indexes) {
+                    index.repriced(book);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Index helpers
+    public static String normalizeTitle(String bookName) {
+        if (bookName == null) {
+            return null;
+        }
+        String trimmed = bookName.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+    
+    public static String normalizeAuthor(String authorName) {
+        return normalizeTitle(authorName); // same trim + case folding rules
+    }
+    
+    private <V> Map<String, V> newIndex() {
+        return threadSafe ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+    
+    // Copy of the index sized for the expected number of keys, so a bulk load
+    // does not rehash it on every doubling
+    private <V> Map<String, V> presized(Map<String, V> index, int expectedKeys) {
+        int capacity = (int) Math.min(Integer.MAX_VALUE, (long) (expectedKeys / 0.75f) + 1);
+        Map<String, V> copy = threadSafe ? new ConcurrentHashMap<>(capacity) : new HashMap<>(capacity);
+        copy.putAll(index);
+        return copy;
+    }
+    
+    // The book's monitor keeps its quantity and price still while they join or
+    // leave the running totals (see Book.updateQuantity)
+    private void track(Book book, long id, boolean notify) {
+        book.setId(id);
+        synchronized (book) {
+            int quantity = book.attach(this);
+            totalCopies.add(quantity);
+            inventoryValueCents.add(toCents(book.getBookPrice()) * quantity);
+            if (quantity > 0) {
+                availableTitles.increment();
+            }
+            if (notify) {
+                fireBookAdded(book, quantity);
+            }
+        }
+        indexAuthor(book);
+        books.put(id, book);
+        refreshAvailability(id);
+        indexAdded(book);
+    }
+    
+    private void untrack(Book book) {
+        indexRemoved(book);
+        unindexAuthor(book);
+        synchronized (book) {
+            int quantity = book.release();
+            refreshAvailability(book.getId());
+            totalCopies.add(-quantity);
+            inventoryValueCents.add(-toCents(book.getBookPrice()) * quantity);
+            if (quantity > 0) {
+                availableTitles.decrement();
+            }
+            fireBookRemoved(book);
+        }
+    }
+    
+    // Called by Book, holding the book's monitor, whenever a tracked book's
+    // quantity or price changes
+    void quantityChanged(Book book, int oldQuantity, int newQuantity) {
+        totalCopies.add(newQuantity - oldQuantity);
+        inventoryValueCents.add(toCents(book.getBookPrice()) * (newQuantity - oldQuantity));
+        if (oldQuantity == 0 && newQuantity > 0) {
+            availableTitles.increment();
+            refreshAvailability(book.getId());
+        } else if (oldQuantity > 0 && newQuantity == 0) {
+            availableTitles.decrement();
+            refreshAvailability(book.getId());
+        }
+        fireQuantityChanged(book, oldQuantity, newQuantity);
+    }
+    
+    // Re-derives the in-stock bit from whichever book now holds the id, and
+    // repeats if that changed meanwhile, so racing borrows, returns and
+    // replacements always settle on the book's current state
+    private void refreshAvailability(long id) {
+        while (true) {
+            boolean available = isAvailable(id);
+            books.setAvailable(id, available);
+            if (isAvailable(id) == available) {
+                return;
+            }
+        }
+    }
+    
+    private boolean isAvailable(long id) {
+        Book book = books.get(id);
+        return book != null && book.getLibrary() == this && book.isAvailable();
+    }
+    
+    // Called by Book to rename a tracked book or change its author or ISBN. The
+    // book is taken out of every index, changed and put back under the write
+    // lock, and listeners see it leave and come back as with updateBook. False
+    // if this library no longer holds the book, which then just takes the new
+    // value.
+    boolean titleChanged(Book book, String bookName) {
+        lock.writeLock().lock();
+        try {
+            if (!holdsBook(book)) {
+                return false;
+            }
+            indexRemoved(book);
+            unindexTitle(book, normalizeTitle(book.getBookName()));
+            book.assignBookName(bookName);
+            indexTitle(book);
+            indexAdded(book);
+            fireBookReplaced(book);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    boolean authorChanged(Book book, String bookAuthor) {
+        lock.writeLock().lock();
+        try {
+            if (!holdsBook(book)) {
+                return false;
+            }
+            indexRemoved(book);
+            unindexAuthor(book);
+            book.assignBookAuthor(bookAuthor);
+            indexAuthor(book);
+            indexAdded(book);
+            fireBookReplaced(book);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    boolean isbnChanged(Book book, String isbn) {
+        lock.writeLock().lock();
+        try {
+            if (!holdsBook(book)) {
+                return false;
+            }
+            indexRemoved(book);
+            book.assignIsbn(isbn);
+            indexAdded(book);
+            fireBookReplaced(book);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Book updates the price index itself, after letting go of its monitor
+    void priceChanged(Book book, double oldPrice, double newPrice) {
+        inventoryValueCents.add((toCents(newPrice) - toCents(oldPrice)) * book.getQuantity());
+        firePriceChanged(book, oldPrice, newPrice);
+    }
+    
+    // Listener notification, shared with CompactLibrary
+    boolean hasCatalogListeners() {
+        return listeners.length > 0;
+    }
+    
+    void fireBookAdded(Book book, int quantity) {
+        for (CatalogListener listener : listeners) {
+            listener.bookAdded(book, quantity);
+        }
+    }
+    
+    void fireBookRemoved(Book book) {
+        for (CatalogListener listener : listeners) {
+            listener.bookRemoved(book);
+        }
+    }
+    
+    // A book changed in place, reported as a removal and an add under its id.
+    // Called with the write lock held; borrows and returns skip that lock, so
+    // the book's monitor keeps them from landing between the quantity read for
+    // the add and the events, as in track and untrack. CompactLibrary's
+    // quantity changes need the read lock, so its views are covered already.
+    void fireBookReplaced(Book book) {
+        if (hasCatalogListeners()) {
+            synchronized (book) {
+                fireBookRemoved(book);
+                fireBookAdded(book, book.getQuantity());
+            }
+        }
+    }
+    
+    void fireQuantityChanged(Book book, int oldQuantity, int newQuantity) {
+        for (CatalogListener listener : listeners) {
+            listener.quantityChanged(book, oldQuantity, newQuantity);
+        }
+    }
+    
+    void firePriceChanged(Book book, double oldPrice, double newPrice) {
+        for (CatalogListener listener : listeners) {
+            listener.priceChanged(book, oldPrice, newPrice);
+        }
+    }
+    
+    static long toCents(double price) {
+        return Math.round(price * 100);
+    }
+    
+    private void indexAuthor(Book book) {
+        String key = normalizeAuthor(book.getBookAuthor());
+        if (key != null) {
+            authorIndex.computeIfAbsent(key, k -> threadSafe ? new CopyOnWriteArrayList<>() : new ArrayList<>()).add(book);
+        }
+    }
+    
+    private void unindexAuthor(Book book) {
+        String key = normalizeAuthor(book.getBookAuthor());
+        List<Book> postings = key != null ? authorIndex.get(key) : null;
+        if (postings == null) {
+            return;
+        }
+        for (int i = 0; i < postings.size(); i++) {
+            if (postings.get(i) == book) {
+                postings.remove(i);
+                break;
+            }
+        }
+        if (postings.isEmpty()) {
+            authorIndex.remove(key);
+        }
+    }
+    
     // Override methods
     @Override
     public boolean equals(Object obj) {
@@ -0,0 +1,67 @@
+package com.jsp.lms.model;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Lock of a thread-safe Library. Each unlock tells the library, which runs the
+// work listeners put off on that thread once its outermost hold has ended
+// (see Library.afterChange).
+final class LibraryLock extends ReentrantReadWriteLock {
+    private static final long serialVersionUID = 1L;
+    
+    private final Read read;
+    private final Write write;
+    
+    LibraryLock(Runnable released) {
+        this.read = new Read(this, released);
+        this.write = new Write(this, released);
+    }
+    
+    @Override
+    public ReentrantReadWriteLock.ReadLock readLock() {
+        return read;
+    }
+    
+    @Override
+    public ReentrantReadWriteLock.WriteLock writeLock() {
+        return write;
+    }
+    
+    // Whether the current thread holds the lock in either mode
+    boolean isHeldByCurrentThread() {
+        return isWriteLockedByCurrentThread() || getReadHoldCount() > 0;
+    }
+    
+    private static final class Read extends ReentrantReadWriteLock.ReadLock {
+        private static final long serialVersionUID = 1L;
+        
+        private final transient Runnable released;
+        
+        Read(LibraryLock lock, Runnable released) {
+            super(lock);
+            this.released = released;
+        }
+        
+        @Override
+        public void unlock() {
+            super.unlock();
+            released.run();
+        }
+    }
+    
+    private static final class Write extends ReentrantReadWriteLock.WriteLock {
+        private static final long serialVersionUID = 1L;
+        
+        private final transient Runnable released;
+        
+        Write(LibraryLock lock, Runnable released) {
+            super(lock);
+            this.released = released;
+        }
+        
+        @Override
+        public void unlock() {
+            super.unlock();
+            released.run();
+        }
+    }
+}
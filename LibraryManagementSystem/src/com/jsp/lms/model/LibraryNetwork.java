@@ -0,0 +1,182 @@
+package com.jsp.lms.model;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+// Many branches, one Library each, keyed by the pincode a branch was added
+// under. Changes go to the one branch they name; queries across the network
+// run on every branch at once on the executor and are merged in pincode
+// order. A branch that throws or has not answered by the deadline is listed
+// in the result instead of failing or holding up the others. Branches that
+// change while queries run should be built thread-safe.
+public class LibraryNetwork {
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(2);
+    
+    private final Map<Integer, Library> branches = new ConcurrentSkipListMap<>();
+    private final Executor executor;
+    private volatile Duration timeout;
+    
+    // Queries run on a fork-join pool of one thread per core
+    public LibraryNetwork() {
+        this(new ForkJoinPool(Runtime.getRuntime().availableProcessors()), DEFAULT_TIMEOUT);
+    }
+    
+    public LibraryNetwork(Executor executor, Duration timeout) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        this.executor = executor;
+        setTimeout(timeout);
+    }
+    
+    public Duration getTimeout() {
+        return timeout;
+    }
+    
+    // How long a cross-branch query waits for the slowest branch
+    public void setTimeout(Duration timeout) {
+        if (timeout != null && !timeout.isNegative() && !timeout.isZero()) {
+            this.timeout = timeout;
+        } else {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+    }
+    
+    // Branches
+    public void addBranch(Library branch) {
+        if (branch == null) {
+            throw new IllegalArgumentException("Branch cannot be null");
+        }
+        int pincode = branch.getPincode();
+        if (pincode <= 0) {
+            throw new IllegalArgumentException("Branch must have a pincode");
+        }
+        if (branches.putIfAbsent(pincode, branch) != null) {
+            throw new IllegalArgumentException("A branch with pincode " + pincode + " already exists");
+        }
+    }
+    
+    public boolean removeBranch(int pincode) {
+        return branches.remove(pincode) != null;
+    }
+    
+    public Library getBranch(int pincode) {
+        return branches.get(pincode);
+    }
+    
+    // Branches in pincode order
+    public List<Library> getBranches() {
+        return new ArrayList<>(branches.values());
+    }
+    
+    // Changes, routed to the named branch
+    public boolean addBook(int pincode, Book book) {
+        return branch(pincode).addBook(book);
+    }
+    
+    public boolean removeBook(int pincode, String bookName) {
+        return branch(pincode).removeBook(bookName);
+    }
+    
+    public boolean updateBook(int pincode, Book existingBook, Book updatedBook) {
+        return branch(pincode).updateBook(existingBook, updatedBook);
+    }
+    
+    public boolean borrowBook(int pincode, String bookName) {
+        return branch(pincode).borrowBook(bookName);
+    }
+    
+    public boolean returnBook(int pincode, String bookName) {
+        return branch(pincode).returnBook(bookName);
+    }
+    
+    public Loan borrowBook(int pincode, String borrower, String bookName, Duration loanPeriod) {
+        return branch(pincode).borrowBook(borrower, bookName, loanPeriod);
+    }
+    
+    public boolean returnBook(int pincode, String borrower, String bookName) {
+        return branch(pincode).returnBook(borrower, bookName);
+    }
+    
+    // Queries across every branch
+    // The branches with a copy of the title on the shelf, and their book
+    public NetworkResult<NetworkResult.BranchBook> findAvailableCopies(String bookName) {
+        return query(branch -> {
+            Book book = branch.findBookByName(bookName);
+            List<NetworkResult.BranchBook> found = new ArrayList<>(1);
+            if (book != null && book.isAvailable()) {
+                found.add(new NetworkResult.BranchBook(branch.getPincode(), book));
+            }
+            return found;
+        });
+    }
+    
+    public NetworkResult<NetworkResult.BranchBook> findBooksByAuthor(String authorName) {
+        return query(branch -> tag(branch, branch.findBooksByAuthor(authorName)));
+    }
+    
+    public NetworkResult<NetworkResult.BranchBook> searchBooks(String query, boolean matchAll, int limit) {
+        return query(branch -> tag(branch, branch.searchBooks(query, matchAll, limit)));
+    }
+    
+    // Runs the query on every branch in parallel and merges the answers in
+    // pincode order, waiting no longer than the timeout
+    public <T> NetworkResult<T> query(Function<Library, ? extends Collection<? extends T>> query) {
+        List<Integer> pincodes = new ArrayList<>(branches.size());
+        List<CompletableFuture<Collection<? extends T>>> answers = new ArrayList<>(branches.size());
+        for (Map.Entry<Integer, Library> branch : branches.entrySet()) {
+            pincodes.add(branch.getKey());
+            answers.add(CompletableFuture.supplyAsync(() -> query.apply(branch.getValue()), executor));
+        }
+        
+        try {
+            CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0]))
+                    .get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // sorted out per branch below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        NetworkResult<T> result = new NetworkResult<>();
+        for (int i = 0; i < answers.size(); i++) {
+            CompletableFuture<Collection<? extends T>> answer = answers.get(i);
+            if (!answer.isDone()) {
+                answer.cancel(false); // a query still running is left to finish
+                result.addTimedOut(pincodes.get(i));
+            } else if (answer.isCompletedExceptionally()) {
+                result.addFailed(pincodes.get(i));
+            } else {
+                result.addAll(new ArrayList<>(answer.join()));
+            }
+        }
+        return result;
+    }
+    
+    private Library branch(int pincode) {
+        Library branch = branches.get(pincode);
+        if (branch == null) {
+            throw new IllegalArgumentException("No branch with pincode " + pincode);
+        }
+        return branch;
+    }
+    
+    private static List<NetworkResult.BranchBook> tag(Library branch, List<Book> books) {
+        List<NetworkResult.BranchBook> tagged = new ArrayList<>(books.size());
+        for (Book book : books) {
+            tagged.add(new NetworkResult.BranchBook(branch.getPincode(), book));
+        }
+        return tagged;
+    }
+}
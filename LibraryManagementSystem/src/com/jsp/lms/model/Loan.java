@@ -0,0 +1,82 @@
+package com.jsp.lms.model;
+
+import java.time.Instant;
+
+// One copy of a book lent to a borrower, as recorded by a LoanLedger
+public final class Loan {
+    private final long loanId;
+    private final String borrower;
+    private final long bookId;
+    private final String bookName;
+    private final long borrowedAt; // epoch millis
+    private final long dueAt;
+    private volatile long returnedAt; // 0 while the loan is open
+    
+    // Ledger state, guarded by the ledger
+    TimingWheel.Node<Loan> timer; // null once the loan falls due or closes
+    boolean overdue;
+    
+    Loan(long loanId, String borrower, long bookId, String bookName, long borrowedAt, long dueAt) {
+        this.loanId = loanId;
+        this.borrower = borrower;
+        this.bookId = bookId;
+        this.bookName = bookName;
+        this.borrowedAt = borrowedAt;
+        this.dueAt = dueAt;
+    }
+    
+    // Getters
+    public long getLoanId() {
+        return loanId;
+    }
+    
+    public String getBorrower() {
+        return borrower;
+    }
+    
+    public long getBookId() {
+        return bookId;
+    }
+    
+    // The title when the loan was opened
+    public String getBookName() {
+        return bookName;
+    }
+    
+    public Instant getBorrowedAt() {
+        return Instant.ofEpochMilli(borrowedAt);
+    }
+    
+    public Instant getDueAt() {
+        return Instant.ofEpochMilli(dueAt);
+    }
+    
+    // When the copy came back, or null while the loan is open
+    public Instant getReturnedAt() {
+        long returned = returnedAt;
+        return returned != 0 ? Instant.ofEpochMilli(returned) : null;
+    }
+    
+    public boolean isOpen() {
+        return returnedAt == 0;
+    }
+    
+    long dueAtMillis() {
+        return dueAt;
+    }
+    
+    void close(long now) {
+        returnedAt = Math.max(now, 1);
+    }
+    
+    @Override
+    public String toString() {
+        return "Loan{" +
+                "loanId=" + loanId +
+                ", borrower='" + borrower + '\'' +
+                ", bookName='" + bookName + '\'' +
+                ", dueAt=" + getDueAt() +
+                (isOpen() ? "" : ", returnedAt=" + getReturnedAt()) +
+                '}';
+    }
+}
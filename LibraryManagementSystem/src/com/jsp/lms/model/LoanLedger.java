@@ -0,0 +1,180 @@
+package com.jsp.lms.model;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Open loans, keyed by borrower and by book. Due dates live in a timing wheel
+// whose ticks are tickMillis long, so finding the loans that fell overdue
+// costs amortized O(1) per elapsed tick plus the loans found, however many
+// are open; a loan is reported overdue at the first tick boundary at or after
+// its due time. Loans are opened and closed through the Library, which moves
+// the copies; the ledger itself is thread-safe.
+public class LoanLedger {
+    private static final long DEFAULT_TICK_MILLIS = 60_000;
+    
+    private final Clock clock;
+    private final long tickMillis;
+    private final long origin; // epoch millis of tick 0
+    private final TimingWheel<Loan> wheel;
+    private final Map<String, List<Loan>> byBorrower = new HashMap<>(); // borrower key -> open loans
+    private final Map<Long, List<Loan>> byBook = new HashMap<>(); // book id -> open loans
+    private final Set<Loan> overdue = new LinkedHashSet<>(); // open loans past due, in the order they fell due
+    private Set<Loan> unswept = new LinkedHashSet<>(); // fell overdue since the last sweep
+    private long lastLoanId;
+    private volatile int openLoans;
+    
+    public LoanLedger() {
+        this(Clock.systemUTC(), DEFAULT_TICK_MILLIS);
+    }
+    
+    public LoanLedger(Clock clock, long tickMillis) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.origin = clock.millis();
+        this.wheel = new TimingWheel<>(0);
+    }
+    
+    public Clock getClock() {
+        return clock;
+    }
+    
+    public int getOpenLoanCount() {
+        return openLoans;
+    }
+    
+    // Open loans of the borrower, in the order they were opened
+    public synchronized List<Loan> getLoans(String borrower) {
+        List<Loan> loans = byBorrower.get(borrowerKey(borrower));
+        return loans != null ? new ArrayList<>(loans) : new ArrayList<>();
+    }
+    
+    // Open loans of the book, in the order they were opened
+    public synchronized List<Loan> getLoansOfBook(long bookId) {
+        List<Loan> loans = byBook.get(bookId);
+        return loans != null ? new ArrayList<>(loans) : new ArrayList<>();
+    }
+    
+    // Every open loan past due, in the order they fell due
+    public synchronized List<Loan> getOverdueLoans() {
+        advance();
+        return new ArrayList<>(overdue);
+    }
+    
+    // Loans that fell overdue since the last sweep and are still open, in the
+    // order they fell due; each is reported by one sweep only
+    public synchronized List<Loan> sweepOverdue() {
+        advance();
+        List<Loan> swept = new ArrayList<>(unswept);
+        unswept = new LinkedHashSet<>();
+        return swept;
+    }
+    
+    // Ledger changes, made by the Library once the copy has moved
+    synchronized Loan open(String borrower, long bookId, String bookName, Duration loanPeriod) {
+        advance();
+        long now = clock.millis();
+        long dueAt = now + loanPeriod.toMillis();
+        Loan loan = new Loan(++lastLoanId, borrower.trim(), bookId, bookName, now, dueAt);
+        long dueTick = Math.floorDiv(dueAt - origin + tickMillis - 1, tickMillis);
+        if (dueTick > wheel.currentTick()) {
+            loan.timer = wheel.schedule(loan, dueTick);
+        } else {
+            fellDue(loan); // only if the clock went back
+        }
+        byBorrower.computeIfAbsent(borrowerKey(borrower), k -> new ArrayList<>(2)).add(loan);
+        byBook.computeIfAbsent(bookId, k -> new ArrayList<>(2)).add(loan);
+        openLoans++;
+        return loan;
+    }
+    
+    // Closes the borrower's loan of the book that falls due first
+    synchronized boolean close(String borrower, long bookId) {
+        return close(earliestDue(byBorrower.get(borrowerKey(borrower)), bookId));
+    }
+    
+    // Drops a loan whose copy never reached the borrower
+    synchronized void cancel(Loan loan) {
+        if (loan.isOpen()) {
+            close(loan);
+        }
+    }
+    
+    // Moves the wheel up to the current tick, collecting the loans that fall due
+    private void advance() {
+        long now = clock.millis();
+        wheel.advanceTo(Math.floorDiv(now - origin, tickMillis), this::fellDue);
+    }
+    
+    private void fellDue(Loan loan) {
+        loan.timer = null;
+        loan.overdue = true;
+        overdue.add(loan);
+        unswept.add(loan);
+    }
+    
+    private boolean close(Loan loan) {
+        if (loan == null) {
+            return false;
+        }
+        if (loan.timer != null) {
+            wheel.cancel(loan.timer);
+            loan.timer = null;
+        }
+        if (loan.overdue) {
+            overdue.remove(loan);
+            unswept.remove(loan);
+        }
+        unlist(byBorrower, borrowerKey(loan.getBorrower()), loan);
+        unlist(byBook, loan.getBookId(), loan);
+        loan.close(clock.millis());
+        openLoans--;
+        return true;
+    }
+    
+    private static Loan earliestDue(List<Loan> loans, long bookId) {
+        Loan earliest = null;
+        if (loans != null) {
+            for (Loan loan : loans) {
+                if (loan.getBookId() == bookId && (earliest == null || loan.dueAtMillis() < earliest.dueAtMillis())) {
+                    earliest = loan;
+                }
+            }
+        }
+        return earliest;
+    }
+    
+    private static <K> void unlist(Map<K, List<Loan>> loans, K key, Loan loan) {
+        List<Loan> list = loans.get(key);
+        list.remove(loan);
+        if (list.isEmpty()) {
+            loans.remove(key);
+        }
+    }
+    
+    // Borrowers are matched ignoring case and surrounding spaces
+    static String borrowerKey(String borrower) {
+        return borrower != null ? borrower.trim().toLowerCase(Locale.ROOT) : "";
+    }
+    
+    static void validate(String borrower, Duration loanPeriod) {
+        if (borrower == null || borrower.trim().isEmpty()) {
+            throw new IllegalArgumentException("Borrower cannot be null or empty");
+        }
+        if (loanPeriod == null || loanPeriod.isNegative() || loanPeriod.isZero()) {
+            throw new IllegalArgumentException("Loan period must be positive");
+        }
+    }
+}
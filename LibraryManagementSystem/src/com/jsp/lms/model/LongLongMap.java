@@ -0,0 +1,97 @@
+package com.jsp.lms.model;
+
+// Open-addressing map from positive long keys to long values, with no boxing
+// and no per-entry objects: two parallel arrays, linear probing, and
+// backward-shift deletion. Key 0 marks an empty bucket. Not thread-safe.
+final class LongLongMap {
+    private static final int MIN_CAPACITY = 16;
+    
+    private long[] keys = new long[MIN_CAPACITY];
+    private long[] values = new long[MIN_CAPACITY];
+    private int size;
+    
+    int size() {
+        return size;
+    }
+    
+    long get(long key, long missing) {
+        int mask = keys.length - 1;
+        for (int bucket = home(key, mask); ; bucket = (bucket + 1) & mask) {
+            long current = keys[bucket];
+            if (current == key) {
+                return values[bucket];
+            }
+            if (current == 0) {
+                return missing;
+            }
+        }
+    }
+    
+    void put(long key, long value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Key must be positive");
+        }
+        if ((size + 1) * 4L > keys.length * 3L) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int bucket = home(key, mask);
+        while (keys[bucket] != 0 && keys[bucket] != key) {
+            bucket = (bucket + 1) & mask;
+        }
+        if (keys[bucket] == 0) {
+            keys[bucket] = key;
+            size++;
+        }
+        values[bucket] = value;
+    }
+    
+    // Removes the key and returns its value, or missing if it was absent
+    long remove(long key, long missing) {
+        int mask = keys.length - 1;
+        int bucket = home(key, mask);
+        while (keys[bucket] != key) {
+            if (keys[bucket] == 0) {
+                return missing;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        long value = values[bucket];
+        size--;
+        // Shift later members of the probe run back so lookups never hit a gap
+        int gap = bucket;
+        for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = home(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = 0;
+        return value;
+    }
+    
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int bucket = home(oldKeys[i], mask);
+                while (keys[bucket] != 0) {
+                    bucket = (bucket + 1) & mask;
+                }
+                keys[bucket] = oldKeys[i];
+                values[bucket] = oldValues[i];
+            }
+        }
+    }
+    
+    private static int home(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
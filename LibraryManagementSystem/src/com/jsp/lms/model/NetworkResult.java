@@ -0,0 +1,79 @@
+package com.jsp.lms.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The merged answer of a query run across a LibraryNetwork, with the branches
+// that could not answer in time listed instead of holding the rest up
+public class NetworkResult<T> {
+    private final List<T> results = new ArrayList<>();
+    private final List<Integer> failedBranches = new ArrayList<>();
+    private final List<Integer> timedOutBranches = new ArrayList<>();
+    
+    NetworkResult() {
+    }
+    
+    // Getters
+    public List<T> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+    
+    // Pincodes of the branches whose query threw
+    public List<Integer> getFailedBranches() {
+        return Collections.unmodifiableList(failedBranches);
+    }
+    
+    // Pincodes of the branches that had not answered by the deadline
+    public List<Integer> getTimedOutBranches() {
+        return Collections.unmodifiableList(timedOutBranches);
+    }
+    
+    // True if every branch answered
+    public boolean isComplete() {
+        return failedBranches.isEmpty() && timedOutBranches.isEmpty();
+    }
+    
+    // Accumulation, called by the network as branches are merged
+    void addAll(List<? extends T> branchResults) {
+        results.addAll(branchResults);
+    }
+    
+    void addFailed(int pincode) {
+        failedBranches.add(pincode);
+    }
+    
+    void addTimedOut(int pincode) {
+        timedOutBranches.add(pincode);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("NetworkResult [Results: %d, Failed: %s, Timed out: %s]",
+                results.size(), failedBranches, timedOutBranches);
+    }
+    
+    // A book as held by one branch
+    public static class BranchBook {
+        private final int pincode;
+        private final Book book;
+        
+        BranchBook(int pincode, Book book) {
+            this.pincode = pincode;
+            this.book = book;
+        }
+        
+        public int getPincode() {
+            return pincode;
+        }
+        
+        public Book getBook() {
+            return book;
+        }
+        
+        @Override
+        public String toString() {
+            return pincode + ": " + book;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.jsp.lms.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+// Stand-in lock for libraries that are only used from a single thread
+final class NoOpReadWriteLock implements ReadWriteLock {
+    static final NoOpReadWriteLock INSTANCE = new NoOpReadWriteLock();
+    
+    private static final Lock NO_OP = new Lock() {
+        @Override
+        public void lock() {
+        }
+        
+        @Override
+        public void lockInterruptibly() {
+        }
+        
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+        
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) {
+            return true;
+        }
+        
+        @Override
+        public void unlock() {
+        }
+        
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("Conditions are not supported without locking");
+        }
+    };
+    
+    private NoOpReadWriteLock() {
+    }
+    
+    @Override
+    public Lock readLock() {
+        return NO_OP;
+    }
+    
+    @Override
+    public Lock writeLock() {
+        return NO_OP;
+    }
+}
@@ -0,0 +1,57 @@
+package com.jsp.lms.model;
+
+// CompactLibrary with its columns, string pool and indexes in direct memory.
+// The garbage collector only sees the page directories, a few thousand small
+// objects even at ten million titles, so its pauses do not grow with the
+// catalog. Direct memory is capped by -XX:MaxDirectMemorySize (by default the
+// same as -Xmx) and is returned once the library is unreachable.
+public class OffHeapLibrary extends CompactLibrary {
+    // Default constructor
+    public OffHeapLibrary() {
+        this(false);
+    }
+    
+    public OffHeapLibrary(boolean threadSafe) {
+        super(threadSafe);
+    }
+    
+    // A library whose records are kept in the given pool, or in one of its own
+    // in direct memory if the pool is null
+    public OffHeapLibrary(BibliographicPool pool, boolean threadSafe) {
+        super(pool, threadSafe);
+    }
+    
+    // Parameterized constructor
+    public OffHeapLibrary(String libraryName, String libraryAddress, int pincode) {
+        this(libraryName, libraryAddress, pincode, false);
+    }
+    
+    public OffHeapLibrary(String libraryName, String libraryAddress, int pincode, boolean threadSafe) {
+        super(libraryName, libraryAddress, pincode, threadSafe);
+    }
+    
+    public OffHeapLibrary(String libraryName, String libraryAddress, int pincode, BibliographicPool pool,
+            boolean threadSafe) {
+        super(libraryName, libraryAddress, pincode, pool, threadSafe);
+    }
+    
+    @Override
+    Columns.IntColumn newInts() {
+        return Columns.directInts();
+    }
+    
+    @Override
+    Columns.LongColumn newLongs() {
+        return Columns.directLongs();
+    }
+    
+    @Override
+    Columns.DoubleColumn newDoubles() {
+        return Columns.directDoubles();
+    }
+    
+    @Override
+    Columns.ByteColumn newBytes() {
+        return Columns.directBytes();
+    }
+}
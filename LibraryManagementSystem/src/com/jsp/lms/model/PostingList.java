@@ -0,0 +1,161 @@
+package com.jsp.lms.model;
+
+import java.util.Arrays;
+
+// Posting list of (id, frequency) pairs in id order, delta- and varint-encoded
+// into a byte array, so most postings take two or three bytes. Ids above the
+// last packed one are appended in place; a removal, or an add under a lower
+// id, goes to a small sorted pending list that is folded back in once it
+// reaches an eighth of the packed list. Not thread-safe.
+final class PostingList {
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final long[] NO_IDS = new long[0];
+    private static final int[] NO_FREQUENCIES = new int[0];
+    
+    private byte[] packed = NO_BYTES;
+    private int packedLength;
+    private int packedCount;
+    private long lastPackedId;
+    
+    // Sorted by id; an id may be in both when a book was replaced
+    private long[] addedIds = NO_IDS;
+    private int[] addedFrequencies = NO_FREQUENCIES;
+    private int added;
+    private long[] removedIds = NO_IDS;
+    private int removed;
+    
+    int size() {
+        return packedCount - removed + added;
+    }
+    
+    void add(long id, int frequency) {
+        if (added == 0 && removed == 0 && id > lastPackedId) {
+            append(id - lastPackedId, frequency);
+            lastPackedId = id;
+            packedCount++;
+            return;
+        }
+        int position = Arrays.binarySearch(addedIds, 0, added, id);
+        if (position >= 0) {
+            addedFrequencies[position] = frequency;
+            return;
+        }
+        position = -position - 1;
+        if (added == addedIds.length) {
+            addedIds = Arrays.copyOf(addedIds, Math.max(4, added * 2));
+            addedFrequencies = Arrays.copyOf(addedFrequencies, addedIds.length);
+        }
+        System.arraycopy(addedIds, position, addedIds, position + 1, added - position);
+        System.arraycopy(addedFrequencies, position, addedFrequencies, position + 1, added - position);
+        addedIds[position] = id;
+        addedFrequencies[position] = frequency;
+        added++;
+        repackIfNeeded();
+    }
+    
+    void remove(long id) {
+        int position = Arrays.binarySearch(addedIds, 0, added, id);
+        if (position >= 0) {
+            System.arraycopy(addedIds, position + 1, addedIds, position, added - position - 1);
+            System.arraycopy(addedFrequencies, position + 1, addedFrequencies, position, added - position - 1);
+            added--;
+            return;
+        }
+        position = Arrays.binarySearch(removedIds, 0, removed, id);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        if (removed == removedIds.length) {
+            removedIds = Arrays.copyOf(removedIds, Math.max(4, removed * 2));
+        }
+        System.arraycopy(removedIds, position, removedIds, position + 1, removed - position);
+        removedIds[position] = id;
+        removed++;
+        repackIfNeeded();
+    }
+    
+    // Fills the arrays with the live postings in id order and returns how many
+    int decode(long[] ids, int[] frequencies) {
+        int count = 0;
+        int nextAdded = 0;
+        int nextRemoved = 0;
+        long id = 0;
+        int offset = 0;
+        while (offset < packedLength) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = packed[offset++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int frequency = 0;
+            shift = 0;
+            do {
+                b = packed[offset++];
+                frequency |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += delta;
+            
+            while (nextRemoved < removed && removedIds[nextRemoved] < id) {
+                nextRemoved++;
+            }
+            if (nextRemoved < removed && removedIds[nextRemoved] == id) {
+                continue;
+            }
+            while (nextAdded < added && addedIds[nextAdded] < id && count < ids.length) {
+                ids[count] = addedIds[nextAdded];
+                frequencies[count++] = addedFrequencies[nextAdded++];
+            }
+            if (count < ids.length) {
+                ids[count] = id;
+                frequencies[count++] = frequency;
+            }
+        }
+        while (nextAdded < added && count < ids.length) {
+            ids[count] = addedIds[nextAdded];
+            frequencies[count++] = addedFrequencies[nextAdded++];
+        }
+        return count;
+    }
+    
+    private void repackIfNeeded() {
+        if (added + removed > Math.max(16, packedCount / 8)) {
+            int capacity = packedCount + added;
+            long[] ids = new long[capacity];
+            int[] frequencies = new int[capacity];
+            int count = decode(ids, frequencies);
+            packed = NO_BYTES;
+            packedLength = 0;
+            packedCount = 0;
+            lastPackedId = 0;
+            added = 0;
+            removed = 0;
+            for (int i = 0; i < count; i++) {
+                append(ids[i] - lastPackedId, frequencies[i]);
+                lastPackedId = ids[i];
+                packedCount++;
+            }
+            packed = Arrays.copyOf(packed, packedLength);
+        }
+    }
+    
+    private void append(long delta, int frequency) {
+        if (packedLength + 15 > packed.length) {
+            packed = Arrays.copyOf(packed, Math.max(16, packed.length * 2));
+        }
+        while (delta >= 0x80) {
+            packed[packedLength++] = (byte) (delta | 0x80);
+            delta >>>= 7;
+        }
+        packed[packedLength++] = (byte) delta;
+        while (frequency >= 0x80) {
+            packed[packedLength++] = (byte) (frequency | 0x80);
+            frequency >>>= 7;
+        }
+        packed[packedLength++] = (byte) frequency;
+    }
+}
@@ -0,0 +1,207 @@
+package com.jsp.lms.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+// Books in price order, for price ranges and the cheapest or dearest titles.
+// Laid out like TitlePrefixIndex: one sorted run of (price, id) pairs in two
+// primitive arrays, a small sorted buffer of additions, and removal marks,
+// folded into a new run once they reach an eighth of its size. A query finds
+// its start by binary search and then walks both in order, so it costs
+// O(log n + k). The price each book was indexed under is kept by id, since a
+// tracked Book's price field has already changed by the time it is reindexed.
+final class PriceIndex implements CatalogIndex {
+    private static final int MIN_MERGE = 4096;
+    private static final long NOT_INDEXED = -1; // never the bits of a price
+    
+    // Sorted run, by price and then id
+    private double[] prices = new double[0];
+    private long[] ids = new long[0];
+    private BitSet removed = new BitSet();
+    private int removedCount;
+    
+    private final TreeSet<Entry> added = new TreeSet<>();
+    private final LongLongMap indexedPrices = new LongLongMap(); // id -> price bits
+    
+    @Override
+    public void add(Book book) {
+        double price = priceOf(book);
+        if (Double.isNaN(price) || indexedPrices.get(book.getId(), NOT_INDEXED) != NOT_INDEXED) {
+            return;
+        }
+        indexedPrices.put(book.getId(), Double.doubleToLongBits(price));
+        added.add(new Entry(price, book.getId()));
+        mergeIfNeeded();
+    }
+    
+    @Override
+    public void remove(Book book) {
+        long bits = indexedPrices.remove(book.getId(), NOT_INDEXED);
+        if (bits == NOT_INDEXED) {
+            return;
+        }
+        Entry entry = new Entry(Double.longBitsToDouble(bits), book.getId());
+        if (added.remove(entry)) {
+            return;
+        }
+        int position = lowerBound(entry.price, entry.id);
+        if (position < ids.length && ids[position] == entry.id && !removed.get(position)) {
+            removed.set(position);
+            removedCount++;
+            mergeIfNeeded();
+        }
+    }
+    
+    @Override
+    public void repriced(Book book) {
+        remove(book);
+        add(book);
+    }
+    
+    // Sorts once, in parallel, instead of going through the buffer
+    @Override
+    public void addAll(Collection<Book> books) {
+        List<Entry> entries = new ArrayList<>(books.size() + added.size());
+        for (Book book : books) {
+            double price = priceOf(book);
+            if (!Double.isNaN(price) && indexedPrices.get(book.getId(), NOT_INDEXED) == NOT_INDEXED) {
+                indexedPrices.put(book.getId(), Double.doubleToLongBits(price));
+                entries.add(new Entry(price, book.getId()));
+            }
+        }
+        entries.addAll(added);
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Arrays.parallelSort(sorted);
+        merge(Arrays.asList(sorted));
+    }
+    
+    // Ids of up to limit books priced from min to max inclusive, ordered by
+    // price and then id, or the reverse if descending
+    long[] range(double min, double max, boolean descending, int limit) {
+        if (!(min <= max) || limit <= 0) {
+            return new long[0];
+        }
+        min = min == 0 ? 0.0 : min;
+        max = max == 0 ? 0.0 : max;
+        NavigableSet<Entry> buffered = added.subSet(new Entry(min, Long.MIN_VALUE), true,
+                new Entry(max, Long.MAX_VALUE), true);
+        Iterator<Entry> fromAdded = descending ? buffered.descendingIterator() : buffered.iterator();
+        Entry next = fromAdded.hasNext() ? fromAdded.next() : null;
+        
+        // Walk the run from the near end of the range, merging in the buffer
+        int position = descending ? lowerBound(max, Long.MAX_VALUE) - 1 : lowerBound(min, Long.MIN_VALUE);
+        int step = descending ? -1 : 1;
+        long[] result = new long[Math.min(limit, 16)];
+        int count = 0;
+        while (count < limit) {
+            while (position >= 0 && position < ids.length && removed.get(position)) {
+                position += step;
+            }
+            boolean inRun = position >= 0 && position < ids.length
+                    && (descending ? prices[position] >= min : prices[position] <= max);
+            if (!inRun && next == null) {
+                break;
+            }
+            if (count == result.length) {
+                result = Arrays.copyOf(result, (int) Math.min(limit, count * 2L));
+            }
+            if (inRun && (next == null || compare(position, next.price, next.id) * step < 0)) {
+                result[count++] = ids[position];
+                position += step;
+            } else {
+                result[count++] = next.id;
+                next = fromAdded.hasNext() ? fromAdded.next() : null;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    private void mergeIfNeeded() {
+        if (added.size() + removedCount > Math.max(MIN_MERGE, ids.length / 8)) {
+            merge(added);
+        }
+    }
+    
+    // Rebuilds the run from its live entries and the given sorted additions
+    private void merge(Collection<Entry> additions) {
+        int entries = ids.length - removedCount + additions.size();
+        double[] newPrices = new double[entries];
+        long[] newIds = new long[entries];
+        int count = 0;
+        int position = 0;
+        Iterator<Entry> buffered = additions.iterator();
+        Entry entry = buffered.hasNext() ? buffered.next() : null;
+        while (true) {
+            while (position < ids.length && removed.get(position)) {
+                position++;
+            }
+            boolean inRun = position < ids.length;
+            if (!inRun && entry == null) {
+                break;
+            }
+            if (inRun && (entry == null || compare(position, entry.price, entry.id) < 0)) {
+                newPrices[count] = prices[position];
+                newIds[count++] = ids[position++];
+            } else {
+                newPrices[count] = entry.price;
+                newIds[count++] = entry.id;
+                entry = buffered.hasNext() ? buffered.next() : null;
+            }
+        }
+        
+        prices = newPrices;
+        ids = newIds;
+        removed = new BitSet();
+        removedCount = 0;
+        added.clear();
+    }
+    
+    // First run position whose (price, id) is not below the given one
+    private int lowerBound(double price, long id) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, price, id) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    // Zero for -0.0, which the setters accept and Double.compare orders first
+    private static double priceOf(Book book) {
+        double price = book.getBookPrice();
+        return price == 0 ? 0.0 : price;
+    }
+    
+    private int compare(int position, double price, long id) {
+        int result = Double.compare(prices[position], price);
+        return result != 0 ? result : Long.compare(ids[position], id);
+    }
+    
+    // A buffered addition, ordered like the run
+    private static final class Entry implements Comparable<Entry> {
+        final double price;
+        final long id;
+        
+        Entry(double price, long id) {
+            this.price = price;
+            this.id = id;
+        }
+        
+        @Override
+        public int compareTo(Entry other) {
+            int result = Double.compare(price, other.price);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.jsp.lms.model;
+
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+// Open-addressing hash index over int entries (slots, dictionary ids), kept in
+// an IntColumn so it can live wherever the owner's columns live. Keys are not
+// stored: the owner supplies each entry's hash and compares the key, so the
+// table costs one int per bucket. Linear probing with backward-shift deletion,
+// so removals leave no tombstones. Not thread-safe.
+final class SlotIndex {
+    interface Keys {
+        int hash(int entry);
+        
+        boolean matches(int entry, String key);
+    }
+    
+    private static final int MIN_CAPACITY = 16;
+    
+    private final Keys keys;
+    private final Supplier<Columns.IntColumn> tables;
+    private Columns.IntColumn table; // entry + 1, 0 for an empty bucket
+    private int mask;
+    private int size;
+    
+    SlotIndex(Keys keys, Supplier<Columns.IntColumn> tables) {
+        this.keys = keys;
+        this.tables = tables;
+        this.table = tables.get();
+        this.mask = MIN_CAPACITY - 1;
+        this.table.set(mask, 0);
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    // Entry whose key matches, or -1
+    int find(String key, int hash) {
+        for (int bucket = home(hash); ; bucket = (bucket + 1) & mask) {
+            int value = table.get(bucket);
+            if (value == 0) {
+                return -1;
+            }
+            int entry = value - 1;
+            if (keys.hash(entry) == hash && keys.matches(entry, key)) {
+                return entry;
+            }
+        }
+    }
+    
+    // Entry with the hash that the predicate accepts, or -1; for keys that are
+    // not a single string
+    int find(int hash, IntPredicate matches) {
+        for (int bucket = home(hash); ; bucket = (bucket + 1) & mask) {
+            int value = table.get(bucket);
+            if (value == 0) {
+                return -1;
+            }
+            int entry = value - 1;
+            if (keys.hash(entry) == hash && matches.test(entry)) {
+                return entry;
+            }
+        }
+    }
+    
+    // Adds an entry whose key is not in the index yet
+    void add(int entry) {
+        if ((size + 1) * 4L > (mask + 1L) * 3) {
+            resize((mask + 1) * 2);
+        }
+        insert(entry);
+        size++;
+    }
+    
+    // Swaps an entry for another one with the same key
+    void replace(int entry, int replacement) {
+        int bucket = locate(entry);
+        if (bucket >= 0) {
+            table.set(bucket, replacement + 1);
+        }
+    }
+    
+    void remove(int entry) {
+        int bucket = locate(entry);
+        if (bucket < 0) {
+            return;
+        }
+        size--;
+        // Shift later members of the probe run back so lookups never hit a gap
+        int gap = bucket;
+        for (int next = (gap + 1) & mask; ; next = (next + 1) & mask) {
+            int value = table.get(next);
+            if (value == 0) {
+                break;
+            }
+            int home = home(keys.hash(value - 1));
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table.set(gap, value);
+                gap = next;
+            }
+        }
+        table.set(gap, 0);
+    }
+    
+    // Pre-sizes the table for the given number of entries
+    void ensureCapacity(int entries) {
+        long needed = Math.max(MIN_CAPACITY, entries * 4L / 3 + 1);
+        if (needed > mask + 1) {
+            resize((int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1));
+        }
+    }
+    
+    private int locate(int entry) {
+        for (int bucket = home(keys.hash(entry)); ; bucket = (bucket + 1) & mask) {
+            int value = table.get(bucket);
+            if (value == 0) {
+                return -1;
+            }
+            if (value == entry + 1) {
+                return bucket;
+            }
+        }
+    }
+    
+    private void insert(int entry) {
+        int bucket = home(keys.hash(entry));
+        while (table.get(bucket) != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        table.set(bucket, entry + 1);
+    }
+    
+    private void resize(int capacity) {
+        Columns.IntColumn old = table;
+        int oldCapacity = mask + 1;
+        table = tables.get();
+        mask = capacity - 1;
+        table.set(mask, 0); // allocate the full range up front
+        for (int bucket = 0; bucket < oldCapacity; bucket++) {
+            int value = old.get(bucket);
+            if (value != 0) {
+                insert(value - 1);
+            }
+        }
+    }
+    
+    private int home(int hash) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
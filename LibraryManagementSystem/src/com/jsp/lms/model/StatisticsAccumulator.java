@@ -0,0 +1,150 @@
+package com.jsp.lms.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+// Running totals of one part of a statistics pass. Each fork-join leaf fills
+// its own accumulator and finished parts are merged pairwise, so nothing is
+// shared between threads. Totals are primitives; authors are counted in
+// parallel arrays, found by dictionary id (compact engines) or by the name
+// as stored (default engine), so only a new author allocates.
+final class StatisticsAccumulator {
+    long titles;
+    long copies;
+    long stockOuts;
+    long valueCents;
+    double priceSum;
+    double minPrice = Double.POSITIVE_INFINITY;
+    double maxPrice = Double.NEGATIVE_INFINITY;
+    final long[] priceHistogram = new long[CatalogStatistics.PRICE_BUCKETS.length];
+    final long[] quantityHistogram = new long[CatalogStatistics.QUANTITY_BUCKETS];
+    
+    // Authors: position -> key, titles and copies
+    private final LongIntMap idPositions = new LongIntMap(); // dictionary id + 1 -> position + 1
+    private Map<String, Integer> namePositions; // created on first use
+    private long[] authorIds = new long[16];
+    private String[] authorNames = new String[16];
+    private int[] authorTitles = new int[16];
+    private long[] authorCopies = new long[16];
+    private int authors;
+    
+    // One title with its price and copies on the shelf
+    void add(double price, int quantity) {
+        titles++;
+        copies += quantity;
+        if (quantity == 0) {
+            stockOuts++;
+        }
+        valueCents += Library.toCents(price) * quantity;
+        priceSum += price;
+        minPrice = Math.min(minPrice, price);
+        maxPrice = Math.max(maxPrice, price);
+        priceHistogram[CatalogStatistics.priceBucket(price)]++;
+        quantityHistogram[Math.min(quantity, CatalogStatistics.QUANTITY_BUCKETS - 1)]++;
+    }
+    
+    // The same title's author, by dictionary id or by name; -1 or null for none
+    void addAuthor(long authorId, int quantity) {
+        if (authorId < 0) {
+            return;
+        }
+        int position = idPositions.get(authorId + 1, 0) - 1;
+        if (position < 0) {
+            position = newAuthor(authorId, null);
+            idPositions.put(authorId + 1, position + 1);
+        }
+        authorTitles[position]++;
+        authorCopies[position] += quantity;
+    }
+    
+    void addAuthor(String author, int quantity) {
+        if (author == null) {
+            return;
+        }
+        if (namePositions == null) {
+            namePositions = new HashMap<>();
+        }
+        Integer position = namePositions.get(author);
+        if (position == null) {
+            position = newAuthor(-1, author);
+            namePositions.put(author, position);
+        }
+        authorTitles[position]++;
+        authorCopies[position] += quantity;
+    }
+    
+    StatisticsAccumulator merge(StatisticsAccumulator other) {
+        titles += other.titles;
+        copies += other.copies;
+        stockOuts += other.stockOuts;
+        valueCents += other.valueCents;
+        priceSum += other.priceSum;
+        minPrice = Math.min(minPrice, other.minPrice);
+        maxPrice = Math.max(maxPrice, other.maxPrice);
+        for (int i = 0; i < priceHistogram.length; i++) {
+            priceHistogram[i] += other.priceHistogram[i];
+        }
+        for (int i = 0; i < quantityHistogram.length; i++) {
+            quantityHistogram[i] += other.quantityHistogram[i];
+        }
+        for (int i = 0; i < other.authors; i++) {
+            int position;
+            if (other.authorNames[i] != null) {
+                if (namePositions == null) {
+                    namePositions = new HashMap<>();
+                }
+                Integer known = namePositions.get(other.authorNames[i]);
+                if (known == null) {
+                    known = newAuthor(-1, other.authorNames[i]);
+                    namePositions.put(other.authorNames[i], known);
+                }
+                position = known;
+            } else {
+                position = idPositions.get(other.authorIds[i] + 1, 0) - 1;
+                if (position < 0) {
+                    position = newAuthor(other.authorIds[i], null);
+                    idPositions.put(other.authorIds[i] + 1, position + 1);
+                }
+            }
+            authorTitles[position] += other.authorTitles[i];
+            authorCopies[position] += other.authorCopies[i];
+        }
+        return this;
+    }
+    
+    // The report, with dictionary ids resolved to names. Authors are grouped
+    // the way the author index groups them, ignoring case and outer spaces,
+    // under the first spelling seen.
+    CatalogStatistics finish(LongFunction<String> authorName) {
+        Map<String, CatalogStatistics.AuthorStatistics> byKey = new HashMap<>(Math.max(16, authors * 4 / 3 + 1));
+        for (int i = 0; i < authors; i++) {
+            String name = authorNames[i] != null ? authorNames[i] : authorName.apply(authorIds[i]);
+            String key = Library.normalizeAuthor(name);
+            if (key == null) {
+                continue;
+            }
+            CatalogStatistics.AuthorStatistics author = byKey.get(key);
+            if (author == null) {
+                author = new CatalogStatistics.AuthorStatistics(name.trim());
+                byKey.put(key, author);
+            }
+            author.add(authorTitles[i], authorCopies[i]);
+        }
+        return new CatalogStatistics(this, byKey.values());
+    }
+    
+    private int newAuthor(long authorId, String authorName) {
+        if (authors == authorTitles.length) {
+            int length = authors * 2;
+            authorIds = Arrays.copyOf(authorIds, length);
+            authorNames = Arrays.copyOf(authorNames, length);
+            authorTitles = Arrays.copyOf(authorTitles, length);
+            authorCopies = Arrays.copyOf(authorCopies, length);
+        }
+        authorIds[authors] = authorId;
+        authorNames[authors] = authorName;
+        return authors++;
+    }
+}
@@ -0,0 +1,72 @@
+package com.jsp.lms.model;
+
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+// Dictionary encoding for strings that repeat, such as author names: each
+// distinct string is stored once in the pool and given a dense id, which
+// stays valid for the dictionary's life. When the dictionary has a key
+// normalizer, the normalized key's hash is kept per id for the title or
+// author index.
+final class StringDictionary implements SlotIndex.Keys {
+    private final StringPool pool;
+    private final UnaryOperator<String> normalizer; // null for strings not indexed by key
+    private final Columns.IntColumn codes;
+    private final Columns.IntColumn hashes;
+    private final Columns.IntColumn keyHashes; // null without a normalizer
+    private final SlotIndex index;
+    private int size;
+    
+    StringDictionary(StringPool pool, Supplier<Columns.IntColumn> ints, UnaryOperator<String> normalizer) {
+        this.pool = pool;
+        this.normalizer = normalizer;
+        this.codes = ints.get();
+        this.hashes = ints.get();
+        this.keyHashes = normalizer != null ? ints.get() : null;
+        this.index = new SlotIndex(this, ints);
+    }
+    
+    // Id of the string, adding it on first sight; -1 for null
+    int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        int hash = value.hashCode();
+        int id = index.find(value, hash);
+        if (id >= 0) {
+            return id;
+        }
+        id = size++;
+        codes.set(id, pool.add(value));
+        hashes.set(id, hash);
+        if (normalizer != null) {
+            String key = normalizer.apply(value);
+            keyHashes.set(id, key != null ? key.hashCode() : 0);
+        }
+        index.add(id);
+        return id;
+    }
+    
+    String get(int id) {
+        return id >= 0 ? pool.get(codes.get(id)) : null;
+    }
+    
+    // Whether the string normalizes to the given key
+    boolean matchesKey(int id, String key) {
+        return id >= 0 && pool.matchesKey(codes.get(id), key);
+    }
+    
+    int keyHash(int id) {
+        return id >= 0 && keyHashes != null ? keyHashes.get(id) : 0;
+    }
+    
+    @Override
+    public int hash(int id) {
+        return hashes.get(id);
+    }
+    
+    @Override
+    public boolean matches(int id, String value) {
+        return value.equals(get(id));
+    }
+}
@@ -0,0 +1,106 @@
+package com.jsp.lms.model;
+
+import java.nio.charset.StandardCharsets;
+
+// Append-only UTF-8 string storage. A string's code is its byte offset, so a
+// code costs one int and no per-string object; each string is stored as a
+// varint length followed by its bytes. Codes stay valid for the pool's life.
+final class StringPool {
+    static final int NULL = -1;
+    
+    private final Columns.ByteColumn bytes;
+    private long size;
+    
+    StringPool(Columns.ByteColumn bytes) {
+        this.bytes = bytes;
+    }
+    
+    int add(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        long code = size;
+        if (code > Integer.MAX_VALUE) {
+            throw new IllegalStateException("String pool is full");
+        }
+        long position = code;
+        int length = encoded.length;
+        while (length >= 0x80) {
+            bytes.set(position++, (byte) (length | 0x80));
+            length >>>= 7;
+        }
+        bytes.set(position++, (byte) length);
+        bytes.set(position, encoded);
+        size = position + encoded.length;
+        return (int) code;
+    }
+    
+    String get(int code) {
+        if (code == NULL) {
+            return null;
+        }
+        long position = code;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        byte[] encoded = new byte[length];
+        bytes.get(position, encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+    
+    // Whether the string normalizes to the given key (see Library.normalizeTitle).
+    // ASCII strings, the common case, are compared in place without decoding.
+    boolean matchesKey(int code, String key) {
+        if (code == NULL) {
+            return false;
+        }
+        long position = code;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        long start = position;
+        long end = position + length;
+        while (start < end && bytes.get(start) >= 0 && bytes.get(start) <= ' ') {
+            start++;
+        }
+        while (end > start && bytes.get(end - 1) >= 0 && bytes.get(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start != key.length()) {
+            return hasNonAscii(start, end) && key.equals(Library.normalizeTitle(get(code)));
+        }
+        for (int i = 0; i < key.length(); i++) {
+            int c = bytes.get(start + i);
+            if (c < 0) {
+                return key.equals(Library.normalizeTitle(get(code)));
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean hasNonAscii(long start, long end) {
+        for (long position = start; position < end; position++) {
+            if (bytes.get(position) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,141 @@
+package com.jsp.lms.model;
+
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel: four levels of 64 slots, where a slot of level l
+// spans 64^l ticks, so entries up to 16.7 million ticks ahead are placed in
+// O(1). Each tick visits one level-0 slot; every 64 ticks the next level-1
+// slot is cascaded down into level 0, and so on up the levels, so each entry
+// moves at most three times before it falls due. Entries further ahead wait
+// in the top level and are placed again as it cascades. Slots are circular
+// lists around a sentinel, so cancelling is O(1) as well. Not thread-safe.
+final class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS); // ticks the wheel can place
+    
+    private final Node<T>[][] slots;
+    private long currentTick;
+    private int size;
+    
+    TimingWheel(long startTick) {
+        slots = newSlots();
+        for (Node<T>[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Node<>(null, 0);
+            }
+        }
+        currentTick = startTick;
+    }
+    
+    // Arrays cannot be created with a type argument, so the levels are made with
+    // a wildcard; every node stored in them is a Node<T>
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[][] newSlots() {
+        return (Node<T>[][]) new Node<?>[LEVELS][SLOTS];
+    }
+    
+    long currentTick() {
+        return currentTick;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    // Schedules the value for the given tick, which must be after the current one
+    Node<T> schedule(T value, long dueTick) {
+        if (dueTick <= currentTick) {
+            throw new IllegalArgumentException("Tick " + dueTick + " is not after the current tick " + currentTick);
+        }
+        Node<T> node = new Node<>(value, dueTick);
+        place(node);
+        size++;
+        return node;
+    }
+    
+    // Removes a scheduled entry; one that already fell due is left alone
+    void cancel(Node<T> node) {
+        if (node.next != null) {
+            node.unlink();
+            size--;
+        }
+    }
+    
+    // Moves the wheel forward to the given tick, handing each entry that falls
+    // due on the way to the consumer, in tick order
+    void advanceTo(long tick, Consumer<T> expired) {
+        while (currentTick < tick) {
+            if (size == 0) {
+                currentTick = tick; // nothing to fire or cascade
+                return;
+            }
+            currentTick++;
+            for (int level = 1; level < LEVELS; level++) {
+                long below = currentTick >>> (SLOT_BITS * level);
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break; // the levels below have not wrapped around
+                }
+                cascade(level, (int) (below & SLOT_MASK));
+            }
+            Node<T> head = slots[0][(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                Node<T> node = head.next;
+                node.unlink();
+                size--;
+                expired.accept(node.value);
+            }
+        }
+    }
+    
+    private void cascade(int level, int slot) {
+        Node<T> head = slots[level][slot];
+        while (head.next != head) {
+            Node<T> node = head.next;
+            node.unlink();
+            place(node);
+        }
+    }
+    
+    private void place(Node<T> node) {
+        long delta = node.dueTick - currentTick;
+        long tick = delta < SPAN ? node.dueTick : currentTick + SPAN - 1; // placed again on a later cascade
+        int level = 0;
+        while (level < LEVELS - 1 && tick - currentTick >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        node.linkBefore(slots[level][(int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK)]);
+    }
+    
+    static final class Node<T> {
+        final T value;
+        final long dueTick;
+        private Node<T> next;
+        private Node<T> prev;
+        
+        private Node(T value, long dueTick) {
+            this.value = value;
+            this.dueTick = dueTick;
+            if (value == null) {
+                next = this; // a slot's sentinel
+                prev = this;
+            }
+        }
+        
+        private void linkBefore(Node<T> head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+        
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            next = null;
+            prev = null;
+        }
+    }
+}
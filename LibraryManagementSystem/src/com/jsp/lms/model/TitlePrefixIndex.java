@@ -0,0 +1,260 @@
+package com.jsp.lms.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+// Normalized titles in sorted order, for prefix completion. The bulk of the
+// index is one sorted run of (title, id) entries with the titles packed as
+// UTF-8 into a single byte array, so it costs a few bytes per title on top of
+// the title itself. Additions go to a small sorted buffer and removals mark
+// entries in the run; both are folded into a new run once they reach an
+// eighth of its size, which keeps updates amortized O(log n).
+final class TitlePrefixIndex implements CatalogIndex {
+    private static final int MIN_MERGE = 4096;
+    private static final byte[] NO_BYTES = new byte[0];
+    
+    // Sorted run: entry i's title is keyBytes[keyOffsets[i] .. keyOffsets[i + 1])
+    private byte[] keyBytes = NO_BYTES;
+    private int[] keyOffsets = {0};
+    private long[] ids = new long[0];
+    private BitSet removed = new BitSet();
+    private int removedCount;
+    
+    private final TreeSet<Entry> added = new TreeSet<>();
+    
+    @Override
+    public void add(Book book) {
+        String key = Library.normalizeTitle(book.getBookName());
+        if (key != null) {
+            added.add(new Entry(utf8(key), book.getId()));
+            mergeIfNeeded();
+        }
+    }
+    
+    @Override
+    public void remove(Book book) {
+        String key = Library.normalizeTitle(book.getBookName());
+        if (key == null) {
+            return;
+        }
+        Entry entry = new Entry(utf8(key), book.getId());
+        if (added.remove(entry)) {
+            return;
+        }
+        int position = lowerBound(entry.key, entry.id);
+        if (position < ids.length && !removed.get(position) && ids[position] == entry.id
+                && compareKey(position, entry.key, false) == 0) {
+            removed.set(position);
+            removedCount++;
+            mergeIfNeeded();
+        }
+    }
+    
+    // Sorts once, in parallel, instead of going through the buffer
+    @Override
+    public void addAll(Collection<Book> books) {
+        List<Entry> entries = new ArrayList<>(books.size() + added.size());
+        for (Book book : books) {
+            String key = Library.normalizeTitle(book.getBookName());
+            if (key != null) {
+                entries.add(new Entry(utf8(key), book.getId()));
+            }
+        }
+        entries.addAll(added);
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Arrays.parallelSort(sorted);
+        merge(Arrays.asList(sorted));
+    }
+    
+    // Ids of up to limit titles starting with the normalized prefix, in title order
+    long[] complete(String prefix, int limit) {
+        byte[] key = utf8(prefix);
+        List<Entry> fromAdded = new ArrayList<>();
+        Iterator<Entry> tail = added.tailSet(new Entry(key, Long.MIN_VALUE)).iterator();
+        while (fromAdded.size() < limit && tail.hasNext()) {
+            Entry entry = tail.next();
+            if (!startsWith(entry.key, key)) {
+                break;
+            }
+            fromAdded.add(entry);
+        }
+        
+        // Merge the run and the buffer, both already in order
+        long[] result = new long[limit];
+        int count = 0;
+        int position = lowerBound(key, Long.MIN_VALUE);
+        int next = 0;
+        while (count < limit) {
+            while (position < ids.length && removed.get(position)) {
+                position++;
+            }
+            boolean inRun = position < ids.length && compareKey(position, key, true) == 0;
+            Entry buffered = next < fromAdded.size() ? fromAdded.get(next) : null;
+            if (!inRun && buffered == null) {
+                break;
+            }
+            if (inRun && (buffered == null || compare(position, buffered.key, buffered.id) < 0)) {
+                result[count++] = ids[position++];
+            } else {
+                result[count++] = buffered.id;
+                next++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    private void mergeIfNeeded() {
+        if (added.size() + removedCount > Math.max(MIN_MERGE, ids.length / 8)) {
+            merge();
+        }
+    }
+    
+    private void merge() {
+        merge(added);
+    }
+    
+    // Rebuilds the run from its live entries and the given sorted additions
+    private void merge(Collection<Entry> additions) {
+        int live = ids.length - removedCount;
+        int entries = live + additions.size();
+        long bytes = keyOffsets[ids.length];
+        for (Entry entry : additions) {
+            bytes += entry.key.length;
+        }
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Title index is full");
+        }
+        
+        byte[] newBytes = new byte[(int) bytes];
+        int[] newOffsets = new int[entries + 1];
+        long[] newIds = new long[entries];
+        int count = 0;
+        int written = 0;
+        int position = 0;
+        Iterator<Entry> buffered = additions.iterator();
+        Entry entry = buffered.hasNext() ? buffered.next() : null;
+        while (true) {
+            while (position < ids.length && removed.get(position)) {
+                position++;
+            }
+            boolean inRun = position < ids.length;
+            if (!inRun && entry == null) {
+                break;
+            }
+            if (inRun && (entry == null || compare(position, entry.key, entry.id) < 0)) {
+                int start = keyOffsets[position];
+                int length = keyOffsets[position + 1] - start;
+                System.arraycopy(keyBytes, start, newBytes, written, length);
+                written += length;
+                newIds[count] = ids[position++];
+            } else {
+                System.arraycopy(entry.key, 0, newBytes, written, entry.key.length);
+                written += entry.key.length;
+                newIds[count] = entry.id;
+                entry = buffered.hasNext() ? buffered.next() : null;
+            }
+            newOffsets[++count] = written;
+        }
+        
+        keyBytes = Arrays.copyOf(newBytes, written);
+        keyOffsets = newOffsets;
+        ids = newIds;
+        removed = new BitSet();
+        removedCount = 0;
+        added.clear();
+    }
+    
+    // First run position whose (title, id) is not below the given one
+    private int lowerBound(byte[] key, long id) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, key, id) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    private int compare(int position, byte[] key, long id) {
+        int result = compareKey(position, key, false);
+        return result != 0 ? result : Long.compare(ids[position], id);
+    }
+    
+    // Compares the run entry's title with the key, or with the key as a prefix
+    private int compareKey(int position, byte[] key, boolean prefix) {
+        int start = keyOffsets[position];
+        int length = keyOffsets[position + 1] - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int result = (keyBytes[start + i] & 0xFF) - (key[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        if (prefix && length >= key.length) {
+            return 0;
+        }
+        return length - key.length;
+    }
+    
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    // A buffered addition; orders like the run, by unsigned UTF-8 bytes (which
+    // is code point order) and then by id. The first eight bytes are packed
+    // into a long so most comparisons take one step.
+    private static final class Entry implements Comparable<Entry> {
+        final byte[] key;
+        final long id;
+        private final long head;
+        
+        Entry(byte[] key, long id) {
+            this.key = key;
+            this.id = id;
+            long packed = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                packed = packed << 8 | (i < key.length ? key[i] & 0xFF : 0);
+            }
+            this.head = packed;
+        }
+        
+        @Override
+        public int compareTo(Entry other) {
+            if (head != other.head) {
+                return Long.compareUnsigned(head, other.head);
+            }
+            int common = Math.min(key.length, other.key.length);
+            for (int i = Long.BYTES; i < common; i++) {
+                int result = (key[i] & 0xFF) - (other.key[i] & 0xFF);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            int result = key.length - other.key.length;
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.jsp.lms.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Character-trigram index over normalized titles, for typo-tolerant lookup.
+// A title is padded as "  title " and every three-character window becomes a
+// trigram with a PostingList of the ids whose titles contain it. One edit
+// changes at most three trigrams, so a title within k edits of the key still
+// shares all but 3k of the key's distinct trigrams; candidates are the ids
+// that can still reach that count, and the caller verifies them with
+// editDistance.
+final class TrigramIndex implements CatalogIndex {
+    private static final long[] NO_IDS = new long[0];
+    // Postings decoded per query beyond the lists every match must appear in,
+    // at most this many per candidate they could rule out: decoding a posting
+    // costs far less than verifying a title
+    private static final int DECODE_BUDGET = 1 << 18;
+    private static final int POSTINGS_PER_CANDIDATE = 8;
+    
+    private final LongIntMap slots = new LongIntMap(); // trigram -> position in postings
+    private final List<PostingList> postings = new ArrayList<>();
+    
+    @Override
+    public void add(Book book) {
+        String key = Library.normalizeTitle(book.getBookName());
+        if (key == null) {
+            return;
+        }
+        long[] trigrams = trigrams(key);
+        int count = distinct(trigrams);
+        for (int i = 0; i < count; i++) {
+            int slot = slots.get(trigrams[i], -1);
+            if (slot < 0) {
+                slot = postings.size();
+                postings.add(new PostingList());
+                slots.put(trigrams[i], slot);
+            }
+            postings.get(slot).add(book.getId(), 1);
+        }
+    }
+    
+    @Override
+    public void remove(Book book) {
+        String key = Library.normalizeTitle(book.getBookName());
+        if (key == null) {
+            return;
+        }
+        long[] trigrams = trigrams(key);
+        int count = distinct(trigrams);
+        for (int i = 0; i < count; i++) {
+            int slot = slots.get(trigrams[i], -1);
+            if (slot >= 0) {
+                postings.get(slot).remove(book.getId());
+            }
+        }
+    }
+    
+    // Ids whose titles may be within maxEdits of the normalized key, those
+    // sharing the most trigrams first; at most limit of them
+    long[] candidates(String key, int maxEdits, int limit) {
+        long[] trigrams = trigrams(key);
+        int count = distinct(trigrams);
+        int threshold = count - 3 * maxEdits;
+        if (threshold < 1 || limit <= 0) {
+            return NO_IDS;
+        }
+        
+        PostingList[] lists = new PostingList[count];
+        int present = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = slots.get(trigrams[i], -1);
+            if (slot >= 0 && postings.get(slot).size() > 0) {
+                lists[present++] = postings.get(slot);
+            }
+        }
+        Arrays.sort(lists, 0, present, Comparator.comparingInt(PostingList::size));
+        
+        // A match shares threshold trigrams, so it is in at least one of the
+        // count - threshold + 1 rarest lists; trigrams no title has are the
+        // rarest of all
+        int required = count - threshold + 1 - (count - present);
+        if (required <= 0) {
+            return NO_IDS;
+        }
+        long[] ids = new long[16];
+        int total = 0;
+        for (int list = 0; list < required; list++) {
+            long[] decoded = decode(lists[list]);
+            if (total + decoded.length > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, total + decoded.length));
+            }
+            System.arraycopy(decoded, 0, ids, total, decoded.length);
+            total += decoded.length;
+        }
+        Arrays.sort(ids, 0, total);
+        long[] found = new long[total];
+        int[] shared = new int[total];
+        int foundCount = 0;
+        for (int i = 0; i < total; i++) {
+            if (foundCount > 0 && found[foundCount - 1] == ids[i]) {
+                shared[foundCount - 1]++;
+            } else {
+                found[foundCount] = ids[i];
+                shared[foundCount++] = 1;
+            }
+        }
+        
+        // Count the commoner lists too while the budget lasts, merging each
+        // against the sorted candidates
+        long budget = Math.min(DECODE_BUDGET, (long) foundCount * POSTINGS_PER_CANDIDATE);
+        int decodedPostings = 0;
+        int list = required;
+        for (; list < present && decodedPostings + lists[list].size() <= budget; list++) {
+            long[] decoded = decode(lists[list]);
+            decodedPostings += decoded.length;
+            int i = 0;
+            int j = 0;
+            while (i < foundCount && j < decoded.length) {
+                if (found[i] < decoded[j]) {
+                    i++;
+                } else if (found[i] > decoded[j]) {
+                    j++;
+                } else {
+                    shared[i++]++;
+                    j++;
+                }
+            }
+        }
+        
+        // Lists skipped over budget are assumed to contain every candidate;
+        // order the rest by shared trigrams with a counting sort
+        int skipped = present - list;
+        int[] starts = new int[count + 2];
+        for (int i = 0; i < foundCount; i++) {
+            starts[shared[i]]++;
+        }
+        int position = 0;
+        for (int overlap = count; overlap >= 0; overlap--) {
+            int size = starts[overlap];
+            starts[overlap] = position;
+            position += size;
+        }
+        long[] ordered = new long[foundCount];
+        int[] orderedShared = new int[foundCount];
+        for (int i = 0; i < foundCount; i++) {
+            int slot = starts[shared[i]]++;
+            ordered[slot] = found[i];
+            orderedShared[slot] = shared[i];
+        }
+        int kept = 0;
+        while (kept < foundCount && kept < limit && orderedShared[kept] + skipped >= threshold) {
+            kept++;
+        }
+        return Arrays.copyOf(ordered, kept);
+    }
+    
+    private static long[] decode(PostingList list) {
+        int size = list.size();
+        long[] ids = new long[size];
+        int count = list.decode(ids, new int[size]);
+        return count == size ? ids : Arrays.copyOf(ids, count);
+    }
+    
+    // Edits tolerated for a normalized key: one for short titles, two or three
+    // for longer ones, but never so many that a match could share no trigram
+    static int maxEdits(String key) {
+        int edits = key.length() <= 4 ? 1 : key.length() <= 10 ? 2 : 3;
+        return Math.min(edits, (distinct(trigrams(key)) - 1) / 3);
+    }
+    
+    // Trigrams of "  key ", each packed as three chars above a marker bit so
+    // the value is never zero
+    private static long[] trigrams(String key) {
+        long[] trigrams = new long[key.length() + 1];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = 1L << 48 | (long) charAt(key, i - 2) << 32 | (long) charAt(key, i - 1) << 16 | charAt(key, i);
+        }
+        return trigrams;
+    }
+    
+    private static char charAt(String key, int index) {
+        return index < 0 || index >= key.length() ? ' ' : key.charAt(index);
+    }
+    
+    // Sorts the array, moves the distinct values to the front and returns how many
+    private static int distinct(long[] values) {
+        Arrays.sort(values);
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (count == 0 || values[i] != values[count - 1]) {
+                values[count++] = values[i];
+            }
+        }
+        return count;
+    }
+    
+    // Levenshtein distance, or max + 1 once it is known to exceed max. Only a
+    // band of 2 * max + 1 cells per row is computed.
+    static int editDistance(String a, String b, int max) {
+        int beyond = max + 1;
+        if (Math.abs(a.length() - b.length()) > max) {
+            return beyond;
+        }
+        int[] previous = new int[b.length() + 2];
+        int[] current = new int[b.length() + 2];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = Math.min(j, beyond);
+        }
+        previous[b.length() + 1] = beyond;
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(b.length(), i + max);
+            current[from - 1] = from == 1 ? Math.min(i, beyond) : beyond;
+            current[to + 1] = beyond;
+            int rowMin = current[from - 1];
+            char c = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int substitute = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                int value = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(value, beyond);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return beyond;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
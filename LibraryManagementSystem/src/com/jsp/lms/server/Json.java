@@ -0,0 +1,223 @@
+package com.jsp.lms.server;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.Loan;
+
+// The little JSON the server needs: books, loans and plain values written
+// straight to the response, and flat request objects whose values are
+// strings, numbers, booleans or null. Anything else is rejected.
+final class Json {
+    private Json() {
+    }
+    
+    static void writeBook(Appendable out, Book book) throws IOException {
+        out.append("{\"id\":").append(Long.toString(book.getId()));
+        out.append(",\"name\":");
+        writeString(out, book.getBookName());
+        out.append(",\"author\":");
+        writeString(out, book.getBookAuthor());
+        out.append(",\"price\":").append(Double.toString(book.getBookPrice()));
+        out.append(",\"isbn\":");
+        writeString(out, book.getIsbn());
+        out.append(",\"quantity\":").append(Integer.toString(book.getQuantity())).append('}');
+    }
+    
+    static void writeLoan(Appendable out, Loan loan) throws IOException {
+        out.append("{\"loanId\":").append(Long.toString(loan.getLoanId()));
+        out.append(",\"borrower\":");
+        writeString(out, loan.getBorrower());
+        out.append(",\"bookId\":").append(Long.toString(loan.getBookId()));
+        out.append(",\"bookName\":");
+        writeString(out, loan.getBookName());
+        out.append(",\"dueAt\":");
+        writeString(out, loan.getDueAt().toString());
+        out.append('}');
+    }
+    
+    static void writeString(Appendable out, String value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+    
+    // Parses a flat object into field -> value, where strings come back
+    // unescaped, numbers and booleans as their text, and null as null
+    static Map<String, String> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, String> fields = new LinkedHashMap<>();
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String name = parser.string();
+                parser.expect(':');
+                fields.put(name, parser.value());
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.end();
+        return fields;
+    }
+    
+    private static final class Parser {
+        private final String text;
+        private int position;
+        
+        Parser(String text) {
+            this.text = text;
+        }
+        
+        void expect(char c) {
+            if (!consume(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+        
+        boolean consume(char c) {
+            skipSpaces();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+        
+        void end() {
+            skipSpaces();
+            if (position < text.length()) {
+                throw error("Unexpected text after the object");
+            }
+        }
+        
+        String value() {
+            skipSpaces();
+            if (position >= text.length()) {
+                throw error("Expected a value");
+            }
+            char c = text.charAt(position);
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') {
+                throw error("Nested values are not supported");
+            }
+            int start = position;
+            while (position < text.length() && "-+.eE0123456789truefalsn".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true") || literal.equals("false") || isNumber(literal)) {
+                return literal;
+            }
+            throw error("Expected a value");
+        }
+        
+        String string() {
+            skipSpaces();
+            if (position >= text.length() || text.charAt(position) != '"') {
+                throw error("Expected a string");
+            }
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Bad unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Bad unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        value.append(escaped); // \" \\ and \/
+                }
+            }
+            throw error("Unterminated string");
+        }
+        
+        private void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+        
+        private static boolean isNumber(String literal) {
+            try {
+                Double.parseDouble(literal);
+                return !literal.isEmpty() && Character.isDigit(literal.charAt(literal.length() - 1));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + position);
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.jsp.lms.server;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jsp.lms.controller.Controller;
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.Isbn;
+import com.jsp.lms.model.Loan;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// JSON over HTTP for the Controller operations, so any number of desks can
+// share one thread-safe catalog. Built on the JDK's HttpServer: connections
+// wait on its selector, and only requests being handled occupy one of the
+// pool's threads. Listings stream from Library.forEachBook as a chunked
+// response instead of building the whole list first.
+//
+//   GET    /books[?available=true]        every book, or every book in stock
+//   POST   /books                         add {"name", "author", "price", "isbn", "quantity"}
+//   GET    /books/{id}
+//   PUT    /books/{id}                    update any of the fields above
+//   DELETE /books/{id}
+//   POST   /books/{id}/borrow[?borrower=&days=]
+//   POST   /books/{id}/return[?borrower=]
+//   GET    /search?name=                  a book by name or ISBN
+//   GET    /search?author=
+//   GET    /loans?borrower=, GET /loans/overdue
+//   GET    /stats
+public class LibraryServer {
+    private static final int DEFAULT_LOAN_DAYS = 14;
+    private static final int STREAM_BUFFER = 1 << 16;
+    
+    private final Controller controller;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    // Small responses on kept-alive connections otherwise wait out delayed ACKs
+    // (about 40 ms each); read once, when the first server is created
+    static {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+    
+    public LibraryServer(Controller controller, int port, int threads) throws IOException {
+        if (!controller.getLibrary().isThreadSafe()) {
+            throw new IllegalArgumentException("The library must be thread-safe to be served");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.controller = controller;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "http-" + count.incrementAndGet()));
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    // Stops accepting requests, waits up to the delay for those in progress
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = splitPath(exchange.getRequestURI().getRawPath());
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            switch (path[0]) {
+                case "books":
+                    books(exchange, method, path, query);
+                    break;
+                case "search":
+                    requireMethod(method, "GET");
+                    search(exchange, query);
+                    break;
+                case "loans":
+                    requireMethod(method, "GET");
+                    loans(exchange, path, query);
+                    break;
+                case "stats":
+                    requireMethod(method, "GET");
+                    stats(exchange);
+                    break;
+                default:
+                    sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (MethodNotAllowed e) {
+            sendError(exchange, 405, "Method not allowed");
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // Not in a finally: closing would end a chunked listing cleanly. Anything
+        // thrown reaches the HttpServer instead, which drops the connection, so
+        // a listing cut short reads as a failed transfer rather than a short array.
+        exchange.close();
+    }
+    
+    private void books(HttpExchange exchange, String method, String[] path, Map<String, String> query)
+            throws IOException {
+        if (path.length == 1) {
+            if (method.equals("GET")) {
+                streamBooks(exchange, Boolean.parseBoolean(query.get("available")));
+            } else {
+                requireMethod(method, "POST");
+                addBook(exchange);
+            }
+            return;
+        }
+        
+        long bookId = parseLong(path[1], "book id");
+        if (path.length == 2) {
+            switch (method) {
+                case "GET":
+                    Book book = controller.getBook(bookId);
+                    if (book != null) {
+                        send(exchange, 200, bookJson(book));
+                    } else {
+                        sendError(exchange, 404, "Book not found");
+                    }
+                    break;
+                case "PUT":
+                    updateBook(exchange, bookId);
+                    break;
+                case "DELETE":
+                    sendStatus(exchange, controller.removeBook(bookId), 404, "Book not found");
+                    break;
+                default:
+                    throw new MethodNotAllowed();
+            }
+        } else if (path.length == 3 && path[2].equals("borrow")) {
+            requireMethod(method, "POST");
+            borrow(exchange, bookId, query);
+        } else if (path.length == 3 && path[2].equals("return")) {
+            requireMethod(method, "POST");
+            giveBack(exchange, bookId, query);
+        } else {
+            sendError(exchange, 404, "Not found");
+        }
+    }
+    
+    private void streamBooks(HttpExchange exchange, boolean availableOnly) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); // chunked
+        Writer out = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), STREAM_BUFFER);
+        out.write('[');
+        boolean[] first = {true};
+        boolean complete = controller.forEachBook(availableOnly, book -> {
+            try {
+                if (!first[0]) {
+                    out.write(',');
+                }
+                first[0] = false;
+                Json.writeBook(out, book);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (!complete) {
+            throw new IOException("Listing stopped early");
+        }
+        out.write(']');
+        out.flush();
+    }
+    
+    private void addBook(HttpExchange exchange) throws IOException {
+        Map<String, String> fields = Json.parseObject(readBody(exchange));
+        Book book = new Book();
+        book.setBookName(fields.get("name"));
+        book.setBookAuthor(fields.get("author"));
+        book.setBookPrice(parseDouble(fields.get("price"), "price"));
+        book.setIsbn(fields.get("isbn"));
+        book.setQuantity(fields.containsKey("quantity") ? parseInt(fields.get("quantity"), "quantity") : 1);
+        if (controller.addBook(book)) {
+            send(exchange, 201, "{\"ok\":true}");
+        } else {
+            sendError(exchange, 409, "Book could not be added");
+        }
+    }
+    
+    private void updateBook(HttpExchange exchange, long bookId) throws IOException {
+        Map<String, String> fields = Json.parseObject(readBody(exchange));
+        Book existingBook = controller.getBook(bookId);
+        if (existingBook == null) {
+            sendError(exchange, 404, "Book not found");
+            return;
+        }
+        Book updatedBook = new Book(existingBook.getBookName(), existingBook.getBookAuthor(),
+                existingBook.getBookPrice(), existingBook.getIsbn(), existingBook.getQuantity());
+        if (fields.containsKey("name")) {
+            updatedBook.setBookName(fields.get("name"));
+        }
+        if (fields.containsKey("author")) {
+            updatedBook.setBookAuthor(fields.get("author"));
+        }
+        if (fields.containsKey("price")) {
+            updatedBook.setBookPrice(parseDouble(fields.get("price"), "price"));
+        }
+        if (fields.containsKey("isbn")) {
+            updatedBook.setIsbn(fields.get("isbn"));
+        }
+        if (fields.containsKey("quantity")) {
+            updatedBook.setQuantity(parseInt(fields.get("quantity"), "quantity"));
+        }
+        sendStatus(exchange, controller.updateBook(bookId, updatedBook), 409, "Book could not be updated");
+    }
+    
+    private void borrow(HttpExchange exchange, long bookId, Map<String, String> query) throws IOException {
+        String borrower = query.get("borrower");
+        if (borrower == null) {
+            sendStatus(exchange, controller.borrowBook(bookId), 409, "No copy available");
+            return;
+        }
+        int loanDays = query.containsKey("days") ? parseInt(query.get("days"), "days") : DEFAULT_LOAN_DAYS;
+        if (borrower.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty borrower");
+        }
+        if (loanDays <= 0) {
+            throw new IllegalArgumentException("Invalid days: " + loanDays);
+        }
+        Loan loan = controller.borrowBook(borrower, bookId, loanDays);
+        if (loan != null) {
+            StringBuilder body = new StringBuilder(160);
+            Json.writeLoan(body, loan);
+            send(exchange, 200, body.toString());
+        } else {
+            sendError(exchange, 409, "No copy available");
+        }
+    }
+    
+    private void giveBack(HttpExchange exchange, long bookId, Map<String, String> query) throws IOException {
+        String borrower = query.get("borrower");
+        if (borrower == null) {
+            sendStatus(exchange, controller.returnBook(bookId), 404, "Book not found");
+        } else if (borrower.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty borrower");
+        } else {
+            sendStatus(exchange, controller.returnBook(borrower, bookId), 409, "No open loan of this book");
+        }
+    }
+    
+    private void search(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String name = query.get("name");
+        String author = query.get("author");
+        if (name != null) {
+            Book book = Isbn.isValid(name) ? controller.findByIsbn(name) : null;
+            book = book != null ? book : controller.getBook(name);
+            if (book != null) {
+                send(exchange, 200, bookJson(book));
+            } else {
+                sendError(exchange, 404, "Book not found");
+            }
+        } else if (author != null) {
+            List<Book> books = controller.searchBooksByAuthor(author);
+            StringBuilder body = new StringBuilder(books.size() * 128 + 2).append('[');
+            for (int i = 0; i < books.size(); i++) {
+                if (i > 0) {
+                    body.append(',');
+                }
+                Json.writeBook(body, books.get(i));
+            }
+            send(exchange, 200, body.append(']').toString());
+        } else {
+            throw new IllegalArgumentException("Search needs a name or an author");
+        }
+    }
+    
+    private void loans(HttpExchange exchange, String[] path, Map<String, String> query) throws IOException {
+        List<Loan> loans;
+        if (path.length == 2 && path[1].equals("overdue")) {
+            loans = controller.getOverdueLoans();
+        } else if (path.length == 1 && query.get("borrower") != null) {
+            loans = controller.getLoans(query.get("borrower"));
+        } else {
+            throw new IllegalArgumentException("Loans need a borrower, or use /loans/overdue");
+        }
+        StringBuilder body = new StringBuilder(loans.size() * 160 + 2).append('[');
+        for (int i = 0; i < loans.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            Json.writeLoan(body, loans.get(i));
+        }
+        send(exchange, 200, body.append(']').toString());
+    }
+    
+    private void stats(HttpExchange exchange) throws IOException {
+        send(exchange, 200, "{\"titles\":" + controller.getTotalBooks()
+                + ",\"copies\":" + controller.getTotalBookCopies()
+                + ",\"availableTitles\":" + controller.getAvailableTitleCount()
+                + ",\"inventoryValue\":" + controller.getTotalInventoryValue() + "}");
+    }
+    
+    // Responses
+    private static String bookJson(Book book) throws IOException {
+        StringBuilder body = new StringBuilder(160);
+        Json.writeBook(body, book);
+        return body.toString();
+    }
+    
+    private static void sendStatus(HttpExchange exchange, boolean success, int failureStatus, String failure)
+            throws IOException {
+        if (success) {
+            send(exchange, 200, "{\"ok\":true}");
+        } else {
+            sendError(exchange, failureStatus, failure);
+        }
+    }
+    
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder body = new StringBuilder("{\"error\":");
+        Json.writeString(body, message);
+        send(exchange, status, body.append('}').toString());
+    }
+    
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+    
+    // Requests
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw new MethodNotAllowed();
+        }
+    }
+    
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+    
+    // Path segments without empty ones; at least one, so "/" gives {""}
+    private static String[] splitPath(String rawPath) {
+        List<String> segments = new ArrayList<>(4);
+        int start = 0;
+        while (start <= rawPath.length()) {
+            int end = rawPath.indexOf('/', start);
+            end = end < 0 ? rawPath.length() : end;
+            if (end > start) {
+                segments.add(rawPath.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments.isEmpty() ? new String[] {""} : segments.toArray(new String[0]);
+    }
+    
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        try {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                String name = equals < 0 ? pair : pair.substring(0, equals);
+                String value = equals < 0 ? "" : pair.substring(equals + 1);
+                query.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // UTF-8 is always supported
+        }
+        return query;
+    }
+    
+    private static long parseLong(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+    
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+    
+    private static double parseDouble(String value, String name) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+    
+    private static final class MethodNotAllowed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        MethodNotAllowed() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.jsp.lms.view;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.jsp.lms.controller.Controller;
+import com.jsp.lms.model.Book;
+import com.jsp.lms.model.Isbn;
+import com.jsp.lms.model.Loan;
+
+// Runs desk operations from a script instead of the menus: one command per
+// line, its fields separated by '|'. Nothing is prompted or redrawn, and all
+// output goes through one writer that is flushed at the end, so a script runs
+// at the speed of the library rather than of the console.
+//
+//   library <name>|<address>|<pincode>
+//   add <name>|<author>|<price>[|<isbn>[|<quantity>]]
+//   remove <name>
+//   update <name or ISBN>|name|author|price|isbn|quantity|<value>
+//   search <name or ISBN>
+//   borrow <name or ISBN>[|<borrower>|<days>]
+//   return <name or ISBN>[|<borrower>]
+//   list, available, stats, overdue
+//   author <author>
+//   keyword <words>[|all]
+//   price <min>|<max>, expensive <count>, cheapest <count>
+//   loans <borrower>
+//
+// A command answers "ok" or "fail"; a query answers "ok <count>" and then one
+// tab-separated line per book or loan. A line that cannot be run answers
+// "error <line>: <reason>" and the script goes on. Blank lines and lines
+// starting with '#' are skipped.
+public class BatchView {
+    private final Controller controller;
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder line = new StringBuilder(128);
+    private Writer out;
+    
+    public BatchView(Controller controller) {
+        this.controller = controller;
+    }
+    
+    // Runs every command in the input; returns how many lines were errors
+    public int run(BufferedReader in, Writer out) throws IOException {
+        this.out = out;
+        int errors = 0;
+        int lineNumber = 0;
+        String command;
+        while ((command = in.readLine()) != null) {
+            lineNumber++;
+            command = command.trim();
+            if (command.isEmpty() || command.charAt(0) == '#') {
+                continue;
+            }
+            try {
+                execute(command);
+            } catch (IllegalArgumentException e) {
+                errors++;
+                write("error " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        out.flush();
+        return errors;
+    }
+    
+    private void execute(String command) throws IOException {
+        int space = command.indexOf(' ');
+        String name = (space < 0 ? command : command.substring(0, space)).toLowerCase(Locale.ROOT);
+        split(space < 0 ? "" : command.substring(space + 1));
+        
+        switch (name) {
+            case "library":
+                expect(3);
+                controller.getLibrary().setLibraryName(field(0));
+                controller.getLibrary().setLibraryAddress(field(1));
+                controller.getLibrary().setPincode(parseInt(field(2)));
+                status(true);
+                break;
+            case "add":
+                expect(3, 5);
+                String isbn = fields.size() > 3 && !field(3).isEmpty() ? field(3) : null;
+                int quantity = fields.size() > 4 ? parseInt(field(4)) : 1;
+                status(controller.addBook(new Book(required(0), required(1), parsePrice(field(2)), isbn, quantity)));
+                break;
+            case "remove":
+                expect(1);
+                status(controller.removeBook(required(0)));
+                break;
+            case "update":
+                expect(3);
+                update(required(0), field(1).toLowerCase(Locale.ROOT), field(2));
+                break;
+            case "search":
+                expect(1);
+                Book book = findBook(required(0));
+                if (book != null) {
+                    count(1);
+                    writeBook(book);
+                } else {
+                    status(false);
+                }
+                break;
+            case "borrow":
+                expect(1, 3);
+                borrow();
+                break;
+            case "return":
+                expect(1, 2);
+                giveBack();
+                break;
+            case "list":
+                expect(0);
+                writeBooks(controller.getAllBooks());
+                break;
+            case "available":
+                expect(0);
+                writeBooks(controller.getAvailableBooks());
+                break;
+            case "author":
+                expect(1);
+                writeBooks(controller.searchBooksByAuthor(required(0)));
+                break;
+            case "stats":
+                expect(0);
+                count(1);
+                write(controller.getTotalBooks() + "\t" + controller.getTotalBookCopies() + "\t"
+                        + controller.getAvailableTitleCount() + "\t"
+                        + String.format(Locale.ROOT, "%.2f", controller.getTotalInventoryValue()));
+                break;
+            case "keyword":
+                expect(1, 2);
+                boolean matchAll = fields.size() > 1 && field(1).equalsIgnoreCase("all");
+                writeBooks(controller.searchBooks(required(0), matchAll, Integer.MAX_VALUE));
+                break;
+            case "price":
+                expect(2);
+                writeBooks(controller.findBooksByPrice(parsePrice(field(0)), parsePrice(field(1)), Integer.MAX_VALUE));
+                break;
+            case "expensive":
+                expect(1);
+                writeBooks(controller.getMostExpensiveBooks(parseInt(field(0))));
+                break;
+            case "cheapest":
+                expect(1);
+                writeBooks(controller.getCheapestBooks(parseInt(field(0))));
+                break;
+            case "loans":
+                expect(1);
+                writeLoans(controller.getLoans(required(0)));
+                break;
+            case "overdue":
+                expect(0);
+                writeLoans(controller.getOverdueLoans());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command '" + name + "'");
+        }
+    }
+    
+    private void update(String bookName, String field, String value) throws IOException {
+        Book existingBook = findBook(bookName);
+        if (existingBook == null) {
+            status(false);
+            return;
+        }
+        Book updatedBook = new Book(existingBook.getBookName(), existingBook.getBookAuthor(),
+                existingBook.getBookPrice(), existingBook.getIsbn(), existingBook.getQuantity());
+        switch (field) {
+            case "name":
+                updatedBook.setBookName(value);
+                break;
+            case "author":
+                updatedBook.setBookAuthor(value);
+                break;
+            case "price":
+                updatedBook.setBookPrice(parsePrice(value));
+                break;
+            case "isbn":
+                updatedBook.setIsbn(value);
+                break;
+            case "quantity":
+                updatedBook.setQuantity(parseInt(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown field '" + field + "'");
+        }
+        status(controller.updateBook(existingBook.getId(), updatedBook));
+    }
+    
+    private void borrow() throws IOException {
+        String bookName = required(0);
+        if (fields.size() == 1) {
+            status(Isbn.isValid(bookName) && controller.borrowByIsbn(bookName) || controller.borrowBook(bookName));
+            return;
+        }
+        expect(3);
+        String borrower = required(1);
+        int loanDays = parseInt(field(2));
+        Book book = findBook(bookName);
+        status(book != null && controller.borrowBook(borrower, book.getId(), loanDays) != null);
+    }
+    
+    private void giveBack() throws IOException {
+        String bookName = required(0);
+        if (fields.size() == 1) {
+            status(Isbn.isValid(bookName) && controller.returnByIsbn(bookName) || controller.returnBook(bookName));
+            return;
+        }
+        Book book = findBook(bookName);
+        status(book != null && controller.returnBook(required(1), book.getId()));
+    }
+    
+    // The book named by the text, trying it as an ISBN first
+    private Book findBook(String bookName) {
+        Book book = Isbn.isValid(bookName) ? controller.findByIsbn(bookName) : null;
+        return book != null ? book : controller.getBook(bookName);
+    }
+    
+    // Output
+    private void status(boolean success) throws IOException {
+        write(success ? "ok" : "fail");
+    }
+    
+    private void count(int count) throws IOException {
+        write("ok " + count);
+    }
+    
+    private void writeBooks(List<Book> books) throws IOException {
+        count(books.size());
+        for (Book book : books) {
+            writeBook(book);
+        }
+    }
+    
+    private void writeBook(Book book) throws IOException {
+        line.setLength(0);
+        line.append(book.getId()).append('\t')
+                .append(book.getBookName()).append('\t')
+                .append(book.getBookAuthor()).append('\t')
+                .append(book.getBookPrice()).append('\t')
+                .append(book.getIsbn() != null ? book.getIsbn() : "").append('\t')
+                .append(book.getQuantity());
+        write(line);
+    }
+    
+    private void writeLoans(List<Loan> loans) throws IOException {
+        count(loans.size());
+        for (Loan loan : loans) {
+            line.setLength(0);
+            line.append(loan.getLoanId()).append('\t')
+                    .append(loan.getBorrower()).append('\t')
+                    .append(loan.getBookId()).append('\t')
+                    .append(loan.getBookName()).append('\t')
+                    .append(loan.getDueAt());
+            write(line);
+        }
+    }
+    
+    private void write(CharSequence text) throws IOException {
+        out.append(text).append('\n');
+    }
+    
+    // Parsing: fields are split on '|' and trimmed, without regular expressions
+    private void split(String arguments) {
+        fields.clear();
+        if (arguments.isEmpty()) {
+            return;
+        }
+        int start = 0;
+        while (true) {
+            int end = arguments.indexOf('|', start);
+            fields.add(arguments.substring(start, end < 0 ? arguments.length() : end).trim());
+            if (end < 0) {
+                return;
+            }
+            start = end + 1;
+        }
+    }
+    
+    private void expect(int count) {
+        expect(count, count);
+    }
+    
+    private void expect(int min, int max) {
+        if (fields.size() < min || fields.size() > max) {
+            throw new IllegalArgumentException(min == max
+                    ? "Expected " + min + " fields but found " + fields.size()
+                    : "Expected " + min + " to " + max + " fields but found " + fields.size());
+        }
+    }
+    
+    private String field(int index) {
+        return fields.get(index);
+    }
+    
+    private String required(int index) {
+        String value = fields.get(index);
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Field " + (index + 1) + " cannot be empty");
+        }
+        return value;
+    }
+    
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a whole number: '" + value + "'");
+        }
+    }
+    
+    private static double parsePrice(String value) {
+        try {
+            double price = Double.parseDouble(value);
+            if (!(price >= 0) || Double.isInfinite(price)) {
+                throw new IllegalArgumentException("Price must be a non-negative number: '" + value + "'");
+            }
+            return price;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: '" + value + "'");
+        }
+    }
+}
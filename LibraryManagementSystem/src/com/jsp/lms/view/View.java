@@ -1,11 +1,31 @@
 package com.jsp.lms.view;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
 import com.jsp.lms.controller.Controller;
+import com.jsp.lms.controller.ControllerMetrics;
+import com.jsp.lms.controller.OperationStatistics;
 import com.jsp.lms.model.Book;
+import com.jsp.lms.model.CatalogStatistics;
+import com.jsp.lms.model.CompactLibrary;
+import com.jsp.lms.model.Isbn;
 import com.jsp.lms.model.Library;
+import com.jsp.lms.model.Loan;
+import com.jsp.lms.model.OffHeapLibrary;
+import com.jsp.lms.server.LibraryServer;
 
 public class View {
     private static final Scanner scanner = new Scanner(System.in);
@@ -13,7 +33,11 @@ public class View {
     private final Library library;
     
     public View() {
-        this.library = new Library();
+        this(new Library());
+    }
+    
+    public View(Library library) {
+        this.library = library;
         this.controller = new Controller(library);
     }
     
@@ -57,11 +81,13 @@ public class View {
             System.out.println("║ 5. Borrow Book                6. Return Book                ║");
             System.out.println("║ 7. View All Books             8. View Available Books       ║");
             System.out.println("║ 9. Search by Author           10. Library Statistics        ║");
-            System.out.println("║ 0. Exit                                                      ║");
+            System.out.println("║ 11. Keyword Search            12. Books by Price            ║");
+            System.out.println("║ 13. Loans                     14. Operation Statistics      ║");
+            System.out.println("║ 0. Exit                                                     ║");
             System.out.println("╚══════════════════════════════════════════════════════════════╝");
             
             System.out.print("Enter your choice: ");
-            int choice = getValidIntegerInput(0, 10);
+            int choice = getValidIntegerInput(0, 14);
             
             switch (choice) {
                 case 0:
@@ -97,6 +123,18 @@ public class View {
                 case 10:
                     showLibraryStatistics();
                     break;
+                case 11:
+                    keywordSearch();
+                    break;
+                case 12:
+                    booksByPrice();
+                    break;
+                case 13:
+                    loans();
+                    break;
+                case 14:
+                    operationStatistics();
+                    break;
                 default:
                     System.out.println("Invalid choice. Please try again.");
             }
@@ -116,10 +154,7 @@ public class View {
         double price = getValidDoubleInput(0.0, Double.MAX_VALUE);
         
         System.out.print("Enter ISBN (optional, press Enter to skip): ");
-        String isbn = scanner.nextLine().trim();
-        if (isbn.isEmpty()) {
-            isbn = null;
-        }
+        String isbn = getValidIsbnInput();
         
         System.out.print("Enter quantity (default: 1): ");
         int quantity = getValidIntegerInput(1, Integer.MAX_VALUE);
@@ -199,8 +234,8 @@ public class View {
                 updatedBook.setBookPrice(getValidDoubleInput(0.0, Double.MAX_VALUE));
                 break;
             case 4:
-                System.out.print("Enter new ISBN: ");
-                updatedBook.setIsbn(scanner.nextLine().trim());
+                System.out.print("Enter new ISBN (press Enter to clear): ");
+                updatedBook.setIsbn(getValidIsbnInput());
                 break;
             case 5:
                 System.out.print("Enter new quantity: ");
@@ -218,38 +253,106 @@ public class View {
     private void searchBook() {
         System.out.println("\n=== SEARCH BOOK ===");
         
-        System.out.print("Enter book name to search: ");
+        System.out.print("Enter book name or ISBN to search: ");
         String bookName = getValidStringInput("Book name cannot be empty");
         
-        Book book = controller.getBook(bookName);
+        Book book = Isbn.isValid(bookName) ? controller.findByIsbn(bookName) : null;
+        if (book == null) {
+            book = controller.getBook(bookName);
+        }
         if (book != null) {
             System.out.println("✓ Book found!");
             System.out.println(book);
         } else {
             System.out.println("✗ Book not found.");
+            List<String> suggestions = controller.completeTitle(bookName, 5);
+            if (!suggestions.isEmpty()) {
+                System.out.println("Titles starting with \"" + bookName + "\":");
+                for (String title : suggestions) {
+                    System.out.println("  " + title);
+                }
+            }
+            List<String> similar = controller.suggestTitles(bookName, 5);
+            similar.removeAll(suggestions);
+            if (!similar.isEmpty()) {
+                System.out.println("Did you mean:");
+                for (String title : similar) {
+                    System.out.println("  " + title);
+                }
+            }
         }
     }
     
     private void borrowBook() {
         System.out.println("\n=== BORROW BOOK ===");
         
-        System.out.print("Enter book name to borrow: ");
+        System.out.print("Enter book name or ISBN to borrow: ");
         String bookName = getValidStringInput("Book name cannot be empty");
         
-        if (controller.borrowBook(bookName)) {
+        System.out.print("Enter borrower name (press Enter to skip): ");
+        String borrower = scanner.nextLine().trim();
+        if (!borrower.isEmpty()) {
+            Book book = findBook(bookName);
+            System.out.print("Enter loan period in days: ");
+            int loanDays = getValidIntegerInput(1, 365);
+            Loan loan = book != null ? controller.borrowBook(borrower, book.getId(), loanDays) : null;
+            if (loan != null) {
+                System.out.println("✓ Book borrowed successfully! Due on " + formatDate(loan.getDueAt()));
+            } else if (book == null) {
+                System.out.println("✗ Book not available for borrowing.");
+            } else {
+                System.out.print("No copy is free. Place a hold? (y/n): ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                    placeHold(book, borrower, loanDays);
+                }
+            }
+            return;
+        }
+        
+        boolean borrowed = Isbn.isValid(bookName) && controller.borrowByIsbn(bookName);
+        if (borrowed || controller.borrowBook(bookName)) {
             System.out.println("✓ Book borrowed successfully!");
         } else {
             System.out.println("✗ Book not available for borrowing.");
         }
     }
     
+    // The hold is filled when a copy comes back, usually from a later return
+    private void placeHold(Book book, String borrower, int loanDays) {
+        CompletableFuture<Loan> hold = controller.borrowAsync(book.getId(), borrower, loanDays, 0);
+        if (hold == null) {
+            System.out.println("✗ Could not place a hold.");
+            return;
+        }
+        hold.thenAccept(loan -> System.out.println("✓ Hold filled: " + loan.getBookName() + " lent to "
+                + loan.getBorrower() + ", due on " + formatDate(loan.getDueAt())));
+        if (!hold.isDone()) {
+            System.out.println("✓ Hold placed. Holds waiting for this book: " + controller.getHoldCount(book.getId()));
+        }
+    }
+    
     private void returnBook() {
         System.out.println("\n=== RETURN BOOK ===");
         
-        System.out.print("Enter book name to return: ");
+        System.out.print("Enter book name or ISBN to return: ");
         String bookName = getValidStringInput("Book name cannot be empty");
         
-        if (controller.returnBook(bookName)) {
+        System.out.print("Enter borrower name (press Enter to skip): ");
+        String borrower = scanner.nextLine().trim();
+        if (!borrower.isEmpty()) {
+            Book book = findBook(bookName);
+            if (book == null) {
+                System.out.println("✗ Book not found in library.");
+            } else if (controller.returnBook(borrower, book.getId())) {
+                System.out.println("✓ Book returned successfully!");
+            } else {
+                System.out.println("✗ " + borrower + " has no open loan of this book.");
+            }
+            return;
+        }
+        
+        boolean returned = Isbn.isValid(bookName) && controller.returnByIsbn(bookName);
+        if (returned || controller.returnBook(bookName)) {
             System.out.println("✓ Book returned successfully!");
         } else {
             System.out.println("✗ Book not found in library.");
@@ -281,11 +384,157 @@ public class View {
         }
     }
     
+    private void keywordSearch() {
+        System.out.println("\n=== KEYWORD SEARCH ===");
+        
+        System.out.print("Enter words from the title or author: ");
+        String query = getValidStringInput("Search words cannot be empty");
+        
+        System.out.print("Match all words? (y/n): ");
+        boolean matchAll = scanner.nextLine().trim().equalsIgnoreCase("y");
+        
+        List<Book> books = controller.searchBooks(query, matchAll, 10);
+        if (books.isEmpty()) {
+            System.out.println("No books match these words.");
+        } else {
+            System.out.println("Best matches:");
+            books.forEach(System.out::println);
+        }
+    }
+    
+    private void booksByPrice() {
+        System.out.println("\n=== BOOKS BY PRICE ===");
+        System.out.println("1. Books in a price range");
+        System.out.println("2. Most expensive books");
+        System.out.println("3. Cheapest books");
+        
+        System.out.print("Enter your choice: ");
+        int choice = getValidIntegerInput(1, 3);
+        
+        List<Book> books;
+        if (choice == 1) {
+            System.out.print("Enter minimum price: $");
+            double minPrice = getValidDoubleInput(0.0, Double.MAX_VALUE);
+            System.out.print("Enter maximum price: $");
+            double maxPrice = getValidDoubleInput(minPrice, Double.MAX_VALUE);
+            books = controller.findBooksByPrice(minPrice, maxPrice, Integer.MAX_VALUE);
+        } else {
+            System.out.print("How many books? ");
+            int count = getValidIntegerInput(1, Integer.MAX_VALUE);
+            books = choice == 2 ? controller.getMostExpensiveBooks(count) : controller.getCheapestBooks(count);
+        }
+        
+        if (books.isEmpty()) {
+            System.out.println("No books found.");
+        } else {
+            books.forEach(System.out::println);
+        }
+    }
+    
+    private void loans() {
+        System.out.println("\n=== LOANS ===");
+        System.out.println("1. Loans of a borrower");
+        System.out.println("2. Overdue loans");
+        
+        System.out.print("Enter your choice: ");
+        int choice = getValidIntegerInput(1, 2);
+        
+        List<Loan> loans;
+        if (choice == 1) {
+            System.out.print("Enter borrower name: ");
+            loans = controller.getLoans(getValidStringInput("Borrower name cannot be empty"));
+        } else {
+            loans = controller.getOverdueLoans();
+        }
+        
+        if (loans.isEmpty()) {
+            System.out.println("No loans found.");
+        } else {
+            for (Loan loan : loans) {
+                System.out.println("  " + loan.getBookName() + " - " + loan.getBorrower()
+                        + ", due " + formatDate(loan.getDueAt()));
+            }
+        }
+    }
+    
+    // Latency of every Controller operation called so far, slowest first
+    private void operationStatistics() {
+        ControllerMetrics metrics = controller.getMetrics();
+        System.out.println("\n=== OPERATION STATISTICS ===");
+        System.out.println("1. Show statistics");
+        System.out.println("2. Reset statistics");
+        System.out.println("3. " + (metrics.isEnabled() ? "Disable" : "Enable") + " recording");
+        
+        System.out.print("Enter your choice: ");
+        int choice = getValidIntegerInput(1, 3);
+        
+        if (choice == 2) {
+            metrics.reset();
+            System.out.println("✓ Statistics reset");
+            return;
+        }
+        if (choice == 3) {
+            metrics.setEnabled(!metrics.isEnabled());
+            System.out.println("✓ Recording " + (metrics.isEnabled() ? "enabled" : "disabled"));
+            return;
+        }
+        
+        List<OperationStatistics> operations = metrics.getOperations();
+        if (operations.isEmpty()) {
+            System.out.println("No operations recorded.");
+            return;
+        }
+        System.out.printf("%-22s %8s %7s %10s %10s %10s %10s %10s%n",
+                "Operation", "Calls", "Errors", "Mean us", "p50 us", "p99 us", "p99.9 us", "Max us");
+        for (OperationStatistics operation : operations) {
+            System.out.printf("%-22s %8d %7d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    operation.getOperation(), operation.getCalls(), operation.getErrors(),
+                    operation.getMeanMicros(), operation.getP50Micros(), operation.getP99Micros(),
+                    operation.getP999Micros(), operation.getMaxMicros());
+            operation.getErrorsByType().forEach((type, count) ->
+                    System.out.println("    " + type + ": " + count));
+        }
+    }
+    
     private void showLibraryStatistics() {
         System.out.println("\n=== LIBRARY STATISTICS ===");
         controller.displayLibraryInfo();
         System.out.println("Total unique books: " + controller.getTotalBooks());
         System.out.println("Total book copies: " + controller.getTotalBookCopies());
+        System.out.println("Titles in stock: " + controller.getAvailableTitleCount());
+        System.out.printf("Total inventory value: $%.2f%n", controller.getTotalInventoryValue());
+        
+        CatalogStatistics statistics = controller.getStatistics();
+        if (statistics == null || statistics.getTitles() == 0) {
+            return;
+        }
+        System.out.printf("Out of stock: %d titles (%.1f%%)%n",
+                statistics.getStockOutTitles(), statistics.getStockOutRatio() * 100);
+        System.out.printf("Prices: $%.2f lowest, $%.2f average, $%.2f highest%n",
+                statistics.getMinPrice(), statistics.getAveragePrice(), statistics.getMaxPrice());
+        
+        System.out.println("\nTitles by price:");
+        double[] bounds = statistics.getPriceBucketBounds();
+        long[] prices = statistics.getPriceHistogram();
+        for (int i = 0; i < prices.length; i++) {
+            String range = i + 1 < bounds.length
+                    ? String.format("$%.0f - $%.0f", bounds[i], bounds[i + 1])
+                    : String.format("$%.0f and up", bounds[i]);
+            System.out.printf("  %-16s %d%n", range, prices[i]);
+        }
+        
+        System.out.println("\nTitles by copies on the shelf:");
+        long[] quantities = statistics.getQuantityDistribution();
+        for (int i = 0; i < quantities.length; i++) {
+            String copies = i + 1 < quantities.length ? String.valueOf(i) : i + " or more";
+            System.out.printf("  %-16s %d%n", copies, quantities[i]);
+        }
+        
+        System.out.println("\nTop authors:");
+        for (CatalogStatistics.AuthorStatistics author : statistics.getTopAuthors(10)) {
+            System.out.printf("  %-30s %d titles, %d copies%n",
+                    author.getName(), author.getTitles(), author.getCopies());
+        }
     }
     
     private void exit() {
@@ -294,9 +543,20 @@ public class View {
         System.out.println("║                         GOODBYE!                             ║");
         System.out.println("╚══════════════════════════════════════════════════════════════╝");
         scanner.close();
+        controller.closeJournal();
         System.exit(0);
     }
     
+    // The book named by the text, trying it as an ISBN first
+    private Book findBook(String bookName) {
+        Book book = Isbn.isValid(bookName) ? controller.findByIsbn(bookName) : null;
+        return book != null ? book : controller.getBook(bookName);
+    }
+    
+    private static String formatDate(Instant instant) {
+        return instant.atZone(ZoneId.systemDefault()).toLocalDate().toString();
+    }
+    
     // Input validation methods
     private String getValidStringInput(String errorMessage) {
         while (true) {
@@ -309,6 +569,21 @@ public class View {
         }
     }
     
+    // An empty line means no ISBN
+    private String getValidIsbnInput() {
+        while (true) {
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return null;
+            }
+            if (Isbn.isValid(input)) {
+                return input;
+            }
+            System.out.println("✗ Please enter a valid ISBN-10 or ISBN-13");
+            System.out.print("Please try again: ");
+        }
+    }
+    
     private int getValidIntegerInput(int min, int max) {
         while (true) {
             try {
@@ -355,7 +630,91 @@ public class View {
     }
     
     public static void main(String[] args) {
-        View view = new View();
+        // Optional: --journal <directory> keeps the catalog across runs,
+        // --engine compact|offheap stores it in columns for very large catalogs,
+        // --batch <file> runs a BatchView script instead of the menus, or
+        // reads one from standard input if the file is "-", and --serve <port>
+        // serves the catalog as JSON over HTTP to any number of clients
+        String journal = null;
+        String engine = "default";
+        String batch = null;
+        int port = -1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--journal")) {
+                journal = args[i + 1];
+            } else if (args[i].equals("--engine")) {
+                engine = args[i + 1];
+            } else if (args[i].equals("--batch")) {
+                batch = args[i + 1];
+            } else if (args[i].equals("--serve")) {
+                port = Integer.parseInt(args[i + 1]);
+            }
+        }
+        
+        boolean threadSafe = port >= 0;
+        Library library;
+        if (engine.equals("compact")) {
+            library = new CompactLibrary(threadSafe);
+        } else if (engine.equals("offheap")) {
+            library = new OffHeapLibrary(threadSafe);
+        } else {
+            library = new Library(threadSafe);
+        }
+        View view = new View(library);
+        if (journal != null) {
+            if (!view.controller.openJournal(journal)) {
+                return;
+            }
+            if (batch == null) {
+                System.out.println("✓ Catalog recovered: " + view.controller.getTotalBooks() + " books");
+            }
+        }
+        if (batch != null) {
+            runBatch(view.controller, batch);
+            return;
+        }
+        try {
+            view.controller.getMetrics().registerMBean(engine);
+        } catch (IllegalStateException e) {
+            System.err.println("Error registering metrics: " + e.getMessage());
+        }
+        if (port >= 0) {
+            serve(view.controller, port);
+            return;
+        }
         view.start();
     }
+    
+    // Runs until the process is stopped; the shutdown hook closes the journal
+    private static void serve(Controller controller, int port) {
+        try {
+            LibraryServer server = new LibraryServer(controller, port,
+                    Runtime.getRuntime().availableProcessors() * 4);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(1);
+                controller.closeJournal();
+            }));
+            server.start();
+            System.out.println("✓ Serving the catalog on http://localhost:" + server.getPort() + "/");
+        } catch (IOException e) {
+            System.err.println("Error starting server: " + e.getMessage());
+            controller.closeJournal();
+        }
+    }
+    
+    private static void runBatch(Controller controller, String script) {
+        try (BufferedReader in = script.equals("-")
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                    : Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8)) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            int errors = new BatchView(controller).run(in, out);
+            if (errors > 0) {
+                System.err.println(errors + " script lines could not be run");
+            }
+        } catch (IOException e) {
+            System.err.println("Error running batch script: " + e.getMessage());
+        } finally {
+            controller.closeJournal();
+        }
+    }
 }